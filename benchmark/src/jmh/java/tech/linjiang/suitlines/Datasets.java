@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试使用的数据：固定种子的随机游走，每次运行完全相同。<br>
+ * 数据集以"点数x线数"的形式作为参数，只列出实际会遇到的组合，避免笛卡尔积产生无法放入内存的数据集
+ */
+final class Datasets {
+
+    /**
+     * 可见区域的宽度，与常见的手机屏幕相同
+     */
+    static final float WIDTH = 1080;
+    static final float HEIGHT = 600;
+
+    private Datasets() {
+    }
+
+    /**
+     * @param shape 点数x线数
+     * @return 0为点数，1为线数
+     */
+    static int[] parse(String shape) {
+        int split = shape.indexOf('x');
+        if (split <= 0) {
+            throw new IllegalArgumentException("无效的数据集：" + shape);
+        }
+        return new int[]{Integer.parseInt(shape.substring(0, split)),
+                Integer.parseInt(shape.substring(split + 1))};
+    }
+
+    static List<Series> generate(String shape) {
+        int[] sizeAndCount = parse(shape);
+        return generate(sizeAndCount[0], sizeAndCount[1]);
+    }
+
+    static List<Series> generate(int size, int lineCount) {
+        Random random = new Random(size * 31L + lineCount);
+        List<Series> lines = new ArrayList<>(lineCount);
+        for (int j = 0; j < lineCount; j++) {
+            float[] values = new float[size];
+            float value = random.nextFloat() * 100;
+            for (int i = 0; i < size; i++) {
+                value += random.nextFloat() * 10 - 5;
+                values[i] = value;
+            }
+            lines.add(new Series(values, null));
+        }
+        return lines;
+    }
+
+    /**
+     * 按所有数据的y轴区间建立映射，两点之间的距离使所有点刚好放满宽度
+     * @param lines
+     * @return
+     */
+    static Projection project(List<Series> lines) {
+        float[] actualMinAndMax = new float[2], minAndMaxOfY = new float[2];
+        Viewport.calcRangeOfY(lines, actualMinAndMax, minAndMaxOfY);
+        int size = Viewport.calcDataSize(lines);
+        Projection projection = new Projection();
+        projection.set(0, Viewport.calcRealBetween(size, size, WIDTH), 0, HEIGHT,
+                minAndMaxOfY[0], minAndMaxOfY[1], 2);
+        for (int j = 0; j < lines.size(); j++) {
+            projection.apply(lines.get(j), 0, lines.get(j).size());
+        }
+        return projection;
+    }
+}
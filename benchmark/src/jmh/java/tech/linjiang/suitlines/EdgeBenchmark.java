@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按offset查找可见区间：二分查找（findSuitEdgeInVisual）与直接计算（findSuitEdgeInVisual2）。<br>
+ * 只与点数有关，不需要生成数据
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EdgeBenchmark {
+
+    private static final int MAX_OF_VISIBLE = 7;
+    private static final int OFFSETS = 1024;
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+    private final Projection projection = new Projection();
+    private float between;
+    private float maxOffset;
+    /**
+     * 依次使用的offset，模拟滚动中的各个位置
+     */
+    private final float[] offsets = new float[OFFSETS];
+    private final int[] edge = new int[2];
+    private int next;
+
+    @Setup
+    public void setup() {
+        between = Viewport.calcRealBetween(size, MAX_OF_VISIBLE, Datasets.WIDTH);
+        projection.set(0, between, 0, Datasets.HEIGHT, 0, 100, 2);
+        maxOffset = Viewport.calcMaxOffset(projection, size, 0, Datasets.WIDTH);
+        Random random = new Random(size);
+        for (int i = 0; i < OFFSETS; i++) {
+            offsets[i] = -random.nextFloat() * maxOffset;
+        }
+    }
+
+    @Benchmark
+    public int[] search() {
+        float offset = offsets[next++ & (OFFSETS - 1)];
+        return Viewport.searchEdge(projection, offset, maxOffset, size, MAX_OF_VISIBLE, 0, Datasets.WIDTH);
+    }
+
+    @Benchmark
+    public int[] compute() {
+        float offset = offsets[next++ & (OFFSETS - 1)];
+        return Viewport.findEdge(offset, maxOffset, between, size, MAX_OF_VISIBLE, edge);
+    }
+}
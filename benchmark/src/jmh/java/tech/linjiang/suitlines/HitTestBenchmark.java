@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 点击和拖动查找：同一列中的重复查找（缓存命中），以及每次都是新的一列（需要先排序该列）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HitTestBenchmark {
+
+    private static final int SIZE = 10000;
+
+    @Param({"1", "10", "100", "500"})
+    public int lineCount;
+
+    private List<Series> lines;
+    private Projection projection;
+    private final HitIndex hitIndex = new HitIndex();
+    private int next;
+
+    @Setup
+    public void setup() {
+        lines = Datasets.generate(SIZE, lineCount);
+        projection = Datasets.project(lines);
+    }
+
+    @Benchmark
+    public int findInCachedColumn() {
+        float y = (next++ & 1023) * Datasets.HEIGHT / 1024;
+        return hitIndex.find(lines, SIZE / 2, y, Float.MAX_VALUE, projection);
+    }
+
+    @Benchmark
+    public int findInNewColumn() {
+        // 列数远多于缓存的列数，每次都需要重新建立
+        int index = (next++ * 97) % SIZE;
+        return hitIndex.find(lines, index, Datasets.HEIGHT / 2, Float.MAX_VALUE, projection);
+    }
+}
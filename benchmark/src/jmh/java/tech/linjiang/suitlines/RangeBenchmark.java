@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * y轴区间：填充时按所有数据查找（calcMaxUnit），以及fitVisibleY时按可见区域通过区间最值索引查找
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RangeBenchmark {
+
+    /**
+     * 可见区域中的点数
+     */
+    private static final int VISIBLE = 1000;
+
+    @Param({"100x1", "10000x1", "1000000x1", "10000000x1", "100x500", "10000x100", "10000x500"})
+    public String shape;
+
+    private List<Series> lines;
+    private final float[] actualMinAndMax = new float[2];
+    private final float[] minAndMaxOfY = new float[2];
+    private final float[] visibleMinAndMax = new float[2];
+    private int from;
+
+    @Setup
+    public void setup() {
+        lines = Datasets.generate(shape);
+        for (int j = 0; j < lines.size(); j++) {
+            lines.get(j).buildMinMaxTree();
+        }
+        int size = Viewport.calcDataSize(lines);
+        from = Math.max(0, size / 2 - VISIBLE / 2);
+    }
+
+    @Benchmark
+    public float[] rangeOfAll() {
+        Viewport.calcRangeOfY(lines, actualMinAndMax, minAndMaxOfY);
+        return minAndMaxOfY;
+    }
+
+    @Benchmark
+    public float[] rangeOfVisible() {
+        visibleMinAndMax[0] = Float.POSITIVE_INFINITY;
+        visibleMinAndMax[1] = Float.NEGATIVE_INFINITY;
+        for (int j = 0; j < lines.size(); j++) {
+            Series line = lines.get(j);
+            line.queryMinAndMax(from, Math.min(line.size(), from + VISIBLE), visibleMinAndMax);
+        }
+        return visibleMinAndMax;
+    }
+}
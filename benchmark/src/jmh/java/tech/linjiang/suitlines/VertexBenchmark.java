@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成path的顶点：所有点放满一屏宽度时，逐点的M4聚合与从多级聚合中聚合。<br>
+ * path本身依赖android，这里只测量顶点的生成，与PathBuilder中的选择相同：
+ * 点数不足以建立多级聚合时两者相同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VertexBenchmark {
+
+    @Param({"100x1", "10000x1", "1000000x1", "10000000x1", "100x500", "10000x100", "10000x500"})
+    public String shape;
+
+    private List<Series> lines;
+    private Projection projection;
+    private final M4Sampler sampler = new M4Sampler();
+
+    @Setup
+    public void setup() {
+        lines = Datasets.generate(shape);
+        projection = Datasets.project(lines);
+        for (int j = 0; j < lines.size(); j++) {
+            lines.get(j).buildLod();
+        }
+    }
+
+    @Benchmark
+    public int m4() {
+        int count = 0;
+        for (int j = 0; j < lines.size(); j++) {
+            Series line = lines.get(j);
+            count += sampler.sample(line, 0, line.size() - 1, projection, 0, Datasets.HEIGHT);
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int lod() {
+        int count = 0;
+        for (int j = 0; j < lines.size(); j++) {
+            Series line = lines.get(j);
+            int level = line.lod == null ? 0 : line.lod.levelFor(projection.getBetween());
+            if (level > 0) {
+                count += sampler.sample(line.lod, level, 0, line.size() - 1, projection, 0);
+            } else {
+                count += sampler.sample(line, 0, line.size() - 1, projection, 0, Datasets.HEIGHT);
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+/**
+ * 填充动画的时间安排：<br>
+ * 每条line比上一条晚lineCost / percentOfStartNextLine启动，
+ * line内的点在lineCost内依次匀速启动，每个点启动后经过duration完成。<br>
+ * 这里只得到线性的进度，插值由调用者完成。
+ */
+final class AnimTiming {
+
+    private AnimTiming() {
+    }
+
+    /**
+     * 一条线遍历完的时间
+     * @param intervalOfAnimCost    相邻两点启动的间隔，<=0表示所有点同时启动
+     * @param maxOfAnimCost         最大的耗时
+     * @param maxOfVisible
+     * @param dataSize
+     * @return
+     */
+    static long calcLineCost(long intervalOfAnimCost, long maxOfAnimCost, int maxOfVisible, int dataSize) {
+        if (intervalOfAnimCost <= 0) {
+            return 0;
+        }
+        if (maxOfVisible < dataSize) {
+            return maxOfAnimCost;
+        }
+        return Math.min(maxOfAnimCost, intervalOfAnimCost * (dataSize - 1));
+    }
+
+    /**
+     * 第line条line中第index个点的启动时间
+     * @param lineCost
+     * @param percentOfStartNextLine
+     * @param line
+     * @param index
+     * @param startIndex    参与动画的第一个点
+     * @param endIndex      参与动画的最后一个点
+     * @return 相对于动画开始的时间
+     */
+    static long startOf(long lineCost, int percentOfStartNextLine, int line, int index,
+                        int startIndex, int endIndex) {
+        int span = endIndex - startIndex;
+        long startOfLine = lineCost / percentOfStartNextLine * line;
+        return startOfLine + (span > 0 ? lineCost * (index - startIndex) / span : 0);
+    }
+
+    /**
+     * @param elapsed   该点启动后经过的时间，<0表示还未启动
+     * @param duration  每个点的动画时长
+     * @param value     点的值，过小时不需要动画
+     * @return 线性的进度，0表示还未启动，1表示已完成
+     */
+    static float fractionOf(long elapsed, long duration, float value) {
+        if (elapsed < 0) {
+            return 0;
+        }
+        // 如果value小于一定阈值就不开启动画
+        if (Math.abs((int) value) < 0.1 || elapsed >= duration) {
+            return 1;
+        }
+        return (float) elapsed / duration;
+    }
+}
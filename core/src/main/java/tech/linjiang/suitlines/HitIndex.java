@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 点击和拖动查找时，按y查找某一列中最接近的line：<br>
+ * 每列按y排序所有line一次，之后的查找为O(log k)，k为line的数量；
+ * 只缓存最近查找过的几列，拖动时手指通常停留在同一列或相邻的列上。
+ * 映射变化（{@link Projection#getVersion()}）或数据变化（{@link #clear()}）后缓存失效。<br>
+ * 只在主线程中使用，缓存建立后查找不再分配对象。
+ */
+class HitIndex {
+
+    private static final int CACHE_SIZE = 8;
+
+    private final Column[] columns = new Column[CACHE_SIZE];
+    /**
+     * 下一个被替换的缓存
+     */
+    private int next;
+
+    HitIndex() {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            columns[i] = new Column();
+        }
+    }
+
+    /**
+     * 在第index列中查找y最接近的line，距离相同时取索引较小的line，值为NaN的line被忽略
+     * @param lines
+     * @param index
+     * @param y
+     * @param slop          允许的最大距离
+     * @param projection    当前的映射，用于判断缓存是否有效
+     * @return line的索引，没有时为-1
+     */
+    int find(List<Series> lines, int index, float y, float slop, Projection projection) {
+        Column column = columnOf(lines, index, projection);
+        int count = column.count;
+        if (count == 0) {
+            return -1;
+        }
+        float[] ys = column.ys;
+        // 第一个不小于y的位置，它和前一个就是两侧最接近的点
+        int low = 0, high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ys[mid] < y) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int best = -1;
+        float bestDistance = slop;
+        if (low > 0 && y - ys[low - 1] <= bestDistance) {
+            best = low - 1;
+            // y相同的line按索引排列，取第一个
+            while (best > 0 && ys[best - 1] == ys[best]) {
+                best--;
+            }
+            bestDistance = y - ys[best];
+        }
+        if (low < count) {
+            float distance = ys[low] - y;
+            if (distance < bestDistance || (distance == bestDistance
+                    && (best == -1 || column.lines[low] < column.lines[best]))) {
+                best = low;
+            }
+        }
+        return best == -1 ? -1 : column.lines[best];
+    }
+
+    /**
+     * 数据变化后调用
+     */
+    void clear() {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            columns[i].projection = null;
+        }
+    }
+
+    private Column columnOf(List<Series> lines, int index, Projection projection) {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            Column column = columns[i];
+            if (column.index == index && column.projection == projection
+                    && column.version == projection.getVersion()) {
+                return column;
+            }
+        }
+        Column column = columns[next];
+        next = (next + 1) % CACHE_SIZE;
+        column.build(lines, index);
+        column.index = index;
+        column.projection = projection;
+        column.version = projection.getVersion();
+        return column;
+    }
+
+    private static class Column {
+        int index;
+        Projection projection;
+        int version;
+        /**
+         * 按y升序排列的line索引及其y
+         */
+        int[] lines = new int[0];
+        float[] ys = new float[0];
+        int count;
+        /**
+         * 排序用的key，高32位为可排序的y，低32位为line的索引
+         */
+        long[] keys = new long[0];
+
+        void build(List<Series> series, int index) {
+            int size = series.size();
+            if (keys.length < size) {
+                keys = new long[size];
+                lines = new int[size];
+                ys = new float[size];
+            }
+            count = 0;
+            for (int j = 0; j < size; j++) {
+                Series line = series.get(j);
+                if (index < line.firstIndex() || index >= line.firstIndex() + line.size()
+                        || Float.isNaN(line.getValue(index))) {
+                    continue;
+                }
+                int bits = Float.floatToIntBits(line.getY(index));
+                // 负数翻转其余位，使int的顺序与float的顺序一致
+                bits ^= (bits >> 31) & 0x7fffffff;
+                keys[count++] = ((long) bits << 32) | j;
+            }
+            Arrays.sort(keys, 0, count);
+            for (int k = 0; k < count; k++) {
+                int j = (int) keys[k];
+                lines[k] = j;
+                ys[k] = series.get(j).getY(index);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+/**
+ * 一条line的多级聚合：第k级（k >= 1）将每2^k个点合为一块，只保存块内的最小值和最大值（忽略NaN，全部为NaN时为NaN），
+ * 每一级由上一级两两合并得到，所有级别合计约为点数的2倍个float。<br>
+ * 缩小到每个像素列有多个点时，从每列至少有一块的最粗级别聚合，每帧的耗费只与宽度有关，与可见点数无关。<br>
+ * 建立后不再变化，数据被修改（追加、淘汰、数据源窗口）时由{@link Series}丢弃。
+ */
+class LodPyramid {
+
+    /**
+     * 点数少于该值时不建立，逐点的M4聚合已经足够快
+     */
+    static final int MIN_SIZE = 1 << 12;
+
+    /**
+     * levels[k - 1]为第k级
+     */
+    private final float[][] mins;
+    private final float[][] maxs;
+
+    /**
+     * 在后台线程中建立
+     * @param line  firstIndex为0
+     */
+    LodPyramid(Series line) {
+        int size = line.size();
+        int levelCount = 0;
+        for (int blocks = size; blocks > 1; blocks = (blocks + 1) >> 1) {
+            levelCount++;
+        }
+        mins = new float[levelCount][];
+        maxs = new float[levelCount][];
+        if (levelCount == 0) {
+            return;
+        }
+        int blocks = (size + 1) >> 1;
+        float[] levelMins = new float[blocks], levelMaxs = new float[blocks];
+        for (int b = 0; b < blocks; b++) {
+            float first = line.getValue(b << 1);
+            float second = (b << 1) + 1 < size ? line.getValue((b << 1) + 1) : Float.NaN;
+            levelMins[b] = min(first, second);
+            levelMaxs[b] = max(first, second);
+        }
+        mins[0] = levelMins;
+        maxs[0] = levelMaxs;
+        for (int k = 1; k < levelCount; k++) {
+            float[] lastMins = mins[k - 1], lastMaxs = maxs[k - 1];
+            blocks = (lastMins.length + 1) >> 1;
+            levelMins = new float[blocks];
+            levelMaxs = new float[blocks];
+            for (int b = 0; b < blocks; b++) {
+                boolean hasSecond = (b << 1) + 1 < lastMins.length;
+                levelMins[b] = min(lastMins[b << 1], hasSecond ? lastMins[(b << 1) + 1] : Float.NaN);
+                levelMaxs[b] = max(lastMaxs[b << 1], hasSecond ? lastMaxs[(b << 1) + 1] : Float.NaN);
+            }
+            mins[k] = levelMins;
+            maxs[k] = levelMaxs;
+        }
+    }
+
+    /**
+     * 每块不超过一个像素的最粗级别
+     * @param between   两点之间的距离
+     * @return 每个像素列中的点不足2个时为0，表示不使用
+     */
+    int levelFor(float between) {
+        int level = 0;
+        while (level < mins.length && (2 << level) * between <= 1) {
+            level++;
+        }
+        return level;
+    }
+
+    float[] minsOf(int level) {
+        return mins[level - 1];
+    }
+
+    float[] maxsOf(int level) {
+        return maxs[level - 1];
+    }
+
+    private static float min(float a, float b) {
+        return Float.isNaN(a) ? b : (Float.isNaN(b) ? a : Math.min(a, b));
+    }
+
+    private static float max(float a, float b) {
+        return Float.isNaN(a) ? b : (Float.isNaN(b) ? a : Math.max(a, b));
+    }
+}
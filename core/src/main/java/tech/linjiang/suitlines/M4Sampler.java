@@ -0,0 +1,254 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import java.util.Arrays;
+
+/**
+ * M4聚合：将落在同一像素列中的点只保留第一个、最小、最大、最后一个，
+ * 连线后与逐点连线在像素上完全一致，而顶点数只与宽度有关。<br>
+ * 有多级聚合时，也可以直接按块聚合，此时的耗费同样只与宽度有关。<br>
+ * 与逐点连线一样，值为NaN的点（或整块都是NaN）使line断开，输出分为多段，见{@link #getSegmentStarts()}。
+ */
+class M4Sampler {
+
+    /**
+     * 输出的顶点，x、y交替存放
+     */
+    private float[] vertexes = new float[0];
+    private int count;
+    /**
+     * 每一段的第一个顶点
+     */
+    private int[] segmentStarts = new int[0];
+    private int segments;
+    /**
+     * 下一个顶点是否开始新的一段
+     */
+    private boolean needBreak;
+
+    /**
+     * 聚合[startIndex, endIndex]之间的点
+     * @param line
+     * @param startIndex
+     * @param endIndex
+     * @param projection    用于得到x
+     * @param offset        当前的滚动偏移，用于对齐屏幕上的像素列
+     * @param zeroAxisValue y为0时的坐标，用于计算动画中的y
+     * @return 输出的顶点数
+     */
+    int sample(Series line, int startIndex, int endIndex, Projection projection,
+               float offset, float zeroAxisValue) {
+        begin();
+        if (endIndex < startIndex) {
+            return 0;
+        }
+        // 每列最多4个点，首尾各多一列；NaN使一列提前输出后重新开始时会超出，由add按需扩大
+        int columns = (int) (projection.x(endIndex) - projection.x(startIndex)) + 2;
+        ensureCapacity(columns * 4 * 2);
+        float[] values = line.values, ys = line.ys, percents = line.percents;
+        int column = Integer.MIN_VALUE;
+        int first = -1, last = -1, min = -1, max = -1;
+        float firstY = 0, lastY = 0, minY = 0, maxY = 0;
+        for (int i = startIndex; i <= endIndex; i++) {
+            int slot = line.slot(i);
+            if (Float.isNaN(values[slot])) {
+                // 还未加载的点，输出已有的列后断开
+                if (first != -1) {
+                    flush(projection, first, firstY, min, minY, max, maxY, last, lastY);
+                    first = -1;
+                    column = Integer.MIN_VALUE;
+                }
+                needBreak = true;
+                continue;
+            }
+            float y = zeroAxisValue - (zeroAxisValue - ys[slot]) * percents[slot];
+            int cur = (int) Math.floor(projection.x(i) + offset);
+            if (cur != column) {
+                if (first != -1) {
+                    flush(projection, first, firstY, min, minY, max, maxY, last, lastY);
+                }
+                column = cur;
+                first = last = min = max = i;
+                firstY = lastY = minY = maxY = y;
+                continue;
+            }
+            last = i;
+            lastY = y;
+            if (y < minY) {
+                min = i;
+                minY = y;
+            }
+            if (y > maxY) {
+                max = i;
+                maxY = y;
+            }
+        }
+        if (first != -1) {
+            flush(projection, first, firstY, min, minY, max, maxY, last, lastY);
+        }
+        return count;
+    }
+
+    /**
+     * 从多级聚合的第level级聚合[startIndex, endIndex]之间的点：每块只有最值，
+     * 同一像素列中的块合并后输出最大和最小两个点，先输出离上一个点较近的一个
+     * @param lod
+     * @param level         见{@link LodPyramid#levelFor(float)}
+     * @param startIndex
+     * @param endIndex
+     * @param projection
+     * @param offset
+     * @return 输出的顶点数
+     */
+    int sample(LodPyramid lod, int level, int startIndex, int endIndex, Projection projection, float offset) {
+        begin();
+        if (endIndex < startIndex) {
+            return 0;
+        }
+        int firstBlock = startIndex >> level;
+        // 从第一块的起点开始，它可能在startIndex左边；每列最多2个点，首尾各多一列，
+        // 整块NaN使一列提前输出后重新开始时会超出，由add按需扩大
+        int columns = (int) Math.ceil(projection.x(endIndex) - projection.x(firstBlock << level)) + 2;
+        ensureCapacity(columns * 2 * 2);
+        float[] mins = lod.minsOf(level), maxs = lod.maxsOf(level);
+        int lastBlock = Math.min(endIndex >> level, mins.length - 1);
+        int column = Integer.MIN_VALUE;
+        int first = -1;
+        float min = 0, max = 0;
+        for (int b = firstBlock; b <= lastBlock; b++) {
+            if (Float.isNaN(mins[b])) {
+                // 整块都还未加载，输出已有的列后断开
+                if (first != -1) {
+                    flush(projection, first, min, max);
+                    first = -1;
+                    column = Integer.MIN_VALUE;
+                }
+                needBreak = true;
+                continue;
+            }
+            int index = b << level;
+            int cur = (int) Math.floor(projection.x(index) + offset);
+            if (cur != column) {
+                if (first != -1) {
+                    flush(projection, first, min, max);
+                }
+                column = cur;
+                first = index;
+                min = mins[b];
+                max = maxs[b];
+                continue;
+            }
+            min = Math.min(min, mins[b]);
+            max = Math.max(max, maxs[b]);
+        }
+        if (first != -1) {
+            flush(projection, first, min, max);
+        }
+        return count;
+    }
+
+    float[] getVertexes() {
+        return vertexes;
+    }
+
+    /**
+     * @return 每一段的第一个顶点的序号，有效的个数见{@link #getSegmentCount()}
+     */
+    int[] getSegmentStarts() {
+        return segmentStarts;
+    }
+
+    int getSegmentCount() {
+        return segments;
+    }
+
+    private void begin() {
+        count = 0;
+        segments = 0;
+        needBreak = true;
+    }
+
+    /**
+     * 按索引顺序输出一列中的点，并去掉重复的点
+     */
+    private void flush(Projection projection, int first, float firstY, int min, float minY,
+                       int max, float maxY, int last, float lastY) {
+        add(projection, first, firstY);
+        if (min < max) {
+            addIfNew(projection, first, min, minY);
+            addIfNew(projection, min, max, maxY);
+        } else {
+            addIfNew(projection, first, max, maxY);
+            addIfNew(projection, max, min, minY);
+        }
+        if (last != Math.max(min, max)) {
+            addIfNew(projection, first, last, lastY);
+        }
+    }
+
+    /**
+     * 输出一列中块的最值，两者在同一格时只输出一个
+     */
+    private void flush(Projection projection, int first, float min, float max) {
+        float minY = projection.y(min), maxY = projection.y(max);
+        if (count > 0 && !needBreak && Math.abs(vertexes[count * 2 - 1] - minY) < Math.abs(vertexes[count * 2 - 1] - maxY)) {
+            add(projection, first, minY);
+            if (maxY != minY) {
+                add(projection, first, maxY);
+            }
+        } else {
+            add(projection, first, maxY);
+            if (maxY != minY) {
+                add(projection, first, minY);
+            }
+        }
+    }
+
+    private void addIfNew(Projection projection, int previous, int index, float y) {
+        if (index != previous) {
+            add(projection, index, y);
+        }
+    }
+
+    private void add(Projection projection, int index, float y) {
+        if (needBreak) {
+            needBreak = false;
+            if (segments == segmentStarts.length) {
+                int[] bigger = new int[Math.max(4, segments * 2)];
+                System.arraycopy(segmentStarts, 0, bigger, 0, segments);
+                segmentStarts = bigger;
+            }
+            segmentStarts[segments++] = count;
+        }
+        if (count * 2 + 2 > vertexes.length) {
+            vertexes = Arrays.copyOf(vertexes, Math.max(16, vertexes.length * 2));
+        }
+        vertexes[count * 2] = projection.x(index);
+        vertexes[count * 2 + 1] = y;
+        count++;
+    }
+
+    /**
+     * 按预估的顶点数预先分配，避免在add中多次扩大
+     */
+    private void ensureCapacity(int capacity) {
+        if (vertexes.length < capacity) {
+            vertexes = new float[capacity];
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+/**
+ * 区间最值线段树（自底向上），建树O(n)，单点更新和区间查询都是O(log n)。<br>
+ * 叶子与Series数组的位置一一对应，所以可以直接跟随环形缓冲更新。
+ */
+class MinMaxTree {
+
+    private final int capacity;
+    /**
+     * [capacity, 2 * capacity)为叶子，i的父节点为i / 2
+     */
+    private final float[] mins;
+    private final float[] maxs;
+
+    MinMaxTree(float[] values) {
+        capacity = values.length;
+        mins = new float[capacity * 2];
+        maxs = new float[capacity * 2];
+        for (int i = 0; i < capacity; i++) {
+            setLeaf(i + capacity, values[i]);
+        }
+        for (int i = capacity - 1; i > 0; i--) {
+            mins[i] = Math.min(mins[i * 2], mins[i * 2 + 1]);
+            maxs[i] = Math.max(maxs[i * 2], maxs[i * 2 + 1]);
+        }
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    void update(int position, float value) {
+        int i = position + capacity;
+        setLeaf(i, value);
+        for (i >>= 1; i > 0; i >>= 1) {
+            mins[i] = Math.min(mins[i * 2], mins[i * 2 + 1]);
+            maxs[i] = Math.max(maxs[i * 2], maxs[i * 2 + 1]);
+        }
+    }
+
+    /**
+     * NaN不参与比较
+     */
+    private void setLeaf(int i, float value) {
+        boolean isNaN = Float.isNaN(value);
+        mins[i] = isNaN ? Float.POSITIVE_INFINITY : value;
+        maxs[i] = isNaN ? Float.NEGATIVE_INFINITY : value;
+    }
+
+    /**
+     * 查找[from, to)之间的最值，结果与minAndMax中已有的值合并
+     * @param from
+     * @param to
+     * @param minAndMax 0为最小值，1为最大值
+     */
+    void query(int from, int to, float[] minAndMax) {
+        float min = minAndMax[0], max = minAndMax[1];
+        for (int l = from + capacity, r = to + capacity; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                min = Math.min(min, mins[l]);
+                max = Math.max(max, maxs[l]);
+                l++;
+            }
+            if ((r & 1) == 1) {
+                r--;
+                min = Math.min(min, mins[r]);
+                max = Math.max(max, maxs[r]);
+            }
+        }
+        minAndMax[0] = min;
+        minAndMax[1] = max;
+    }
+}
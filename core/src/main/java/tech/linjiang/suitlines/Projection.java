@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+/**
+ * 值到坐标的映射，每次布局/y轴区间变化时计算一次系数，之后对数组批量转换。<br>
+ * y方向的精度与之前的实现保持一致：(value - minOfY) / |maxOfY - minOfY| 保留两位小数并向0截断，
+ * 即y轴被划分为100格。
+ */
+class Projection {
+
+    private static final int STEPS = 100;
+
+    private float left;
+    private float between;
+    private float top;
+    private float height;
+    private float minOfY;
+    /**
+     * 每单位value对应的百分刻度数，即 100 / |maxOfY - minOfY|
+     */
+    private double stepsPerValue;
+    /**
+     * 每一格的起始值（十进制精确值转为float），用于修正浮点运算在格子边界上的误差，
+     * 使结果与按十进制截断完全一致
+     */
+    private final float[] thresholds = new float[STEPS + 1];
+    /**
+     * 防止line的stroke部分在lineArea外被clip
+     */
+    private float padding;
+    /**
+     * 每次重新计算系数或坐标时递增，用于判断依赖坐标的缓存是否有效
+     */
+    private int version;
+
+    /**
+     * 重新计算映射系数
+     * @param left      第0个点的x
+     * @param between   两点之间的距离
+     * @param top       linesArea.top
+     * @param height    linesArea.height()
+     * @param minOfY    y轴最小刻度
+     * @param maxOfY    y轴最大刻度
+     * @param padding   stroke宽度的一半
+     */
+    void set(float left, float between, float top, float height,
+             float minOfY, float maxOfY, float padding) {
+        this.left = left;
+        this.between = between;
+        this.top = top;
+        this.height = height;
+        this.minOfY = minOfY;
+        double absOfY = Math.abs(maxOfY - minOfY);
+        this.stepsPerValue = STEPS / absOfY;
+        this.padding = padding;
+        version++;
+        for (int k = 0; k <= STEPS; k++) {
+            thresholds[k] = (float) (minOfY + k * absOfY / STEPS);
+        }
+    }
+
+    float x(int index) {
+        return left + between * index;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    float getBetween() {
+        return between;
+    }
+
+    /**
+     * 仅更新两点之间的距离，y方向不受影响
+     * @param between
+     */
+    void setBetween(float between) {
+        this.between = between;
+    }
+
+    float y(float value) {
+        return y(stepsOf(value));
+    }
+
+    private float y(int steps) {
+        return top + height * ((STEPS - steps) / (float) STEPS)
+                + (steps == STEPS ? padding : (steps == 0 ? -padding : 0));
+    }
+
+    /**
+     * 得到value所在的格子，先用浮点估算，再与格子边界比较修正
+     * @param value
+     * @return
+     */
+    private int stepsOf(float value) {
+        int steps = (int) ((value - minOfY) * stepsPerValue);
+        steps = steps < 0 ? 0 : (steps > STEPS ? STEPS : steps);
+        if (steps < STEPS && value >= thresholds[steps + 1]) {
+            steps++;
+        } else if (steps > 0 && value < thresholds[steps]) {
+            steps--;
+        }
+        return steps;
+    }
+
+    /**
+     * 批量计算[from, to)之间所有点的y坐标，x由索引直接得到，见{@link #x(int)}；
+     * line维护切线斜率时，同时更新受影响的斜率（两侧各多一个点）
+     * @param line
+     * @param from
+     * @param to
+     */
+    void apply(Series line, int from, int to) {
+        float[] values = line.values, ys = line.ys;
+        version++;
+        // 环形数组最多分为两段连续的区间
+        int slot = line.slot(from);
+        int remain = to - from;
+        while (remain > 0) {
+            int end = Math.min(values.length, slot + remain);
+            for (int i = slot; i < end; i++) {
+                ys[i] = y(stepsOf(values[i]));
+            }
+            remain -= end - slot;
+            slot = 0;
+        }
+        line.updateSlopes(from - 1, to + 1);
+    }
+}
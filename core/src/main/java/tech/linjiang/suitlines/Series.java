@@ -0,0 +1,560 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 一条line的数据池，按索引访问。<br>
+ * 所有点的信息都保存在平行的基本类型数组中，同一索引对应同一个点，
+ * 避免每个点都持有一个对象（PointF、动画等）。<br>
+ * 数组以环形缓冲的方式使用：追加时写在末尾，淘汰时仅移动head，
+ * 所以对外的索引是逻辑索引，第0个总是最旧的点。<br>
+ * 作为数据源（SuitLines.DataSource）的窗口时，只保存[firstIndex, firstIndex + size)之间的点，
+ * 逻辑索引与数据源中的索引相同。<br>
+ * 点的x只由逻辑索引决定（等间距），因此不再单独存储。
+ */
+class Series {
+
+    /**
+     * 总点数超过该值时，才将最值的查找分散到多个线程
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * 逻辑第0个点在数组中的位置
+     */
+    private int head;
+    /**
+     * 点的数量
+     */
+    private int size;
+    /**
+     * 第一个点的逻辑索引，仅作为数据源的窗口时不为0
+     */
+    private int firstIndex;
+    /**
+     * 每个点的值
+     */
+    float[] values;
+    /**
+     * 每个点的额外信息（可选，x轴），全部为空时不分配
+     */
+    private String[] extXs;
+    /**
+     * 每个点的y坐标,都是相对的canvas而不是linesArea
+     */
+    float[] ys;
+    /**
+     * 每个点的动画进度，默认为1表示无动画
+     */
+    float[] percents;
+    /**
+     * 每个点处的切线斜率（每个索引间隔的y变化），用于单调曲线的控制点；
+     * 为null表示不需要，只在每次计算y坐标时更新
+     */
+    float[] slopes;
+    /**
+     * 每个点被追加的时间，仅在追加数据时才分配
+     */
+    private long[] times;
+    /**
+     * 区间最值索引，仅在需要按可见区域查找最值时才建立
+     */
+    private MinMaxTree minMaxTree;
+    /**
+     * 多级聚合，仅在填充后需要时建立，数据被修改时丢弃
+     */
+    LodPyramid lod;
+
+    Series(float[] values, String[] extXs) {
+        this.size = values.length;
+        this.values = values;
+        this.extXs = extXs;
+        this.ys = new float[size];
+        this.percents = new float[size];
+        Arrays.fill(percents, 1f);
+    }
+
+    /**
+     * 创建一条空的line，用于追加数据
+     * @param capacity 初始容量
+     */
+    Series(int capacity) {
+        capacity = Math.max(capacity, MIN_CAPACITY);
+        this.values = new float[capacity];
+        this.ys = new float[capacity];
+        this.percents = new float[capacity];
+    }
+
+    /**
+     * 将输入的Unit转化为数组存储，转化后不再持有Unit
+     * @param units 不能为空
+     * @return
+     */
+    static Series from(List<Unit> units) {
+        int size = units.size();
+        float[] values = new float[size];
+        String[] extXs = null;
+        for (int i = 0; i < size; i++) {
+            Unit unit = units.get(i);
+            values[i] = unit.getValue();
+            if (unit.getExtX() != null) {
+                if (extXs == null) {
+                    extXs = new String[size];
+                }
+                extXs[i] = unit.getExtX();
+            }
+        }
+        return new Series(values, extXs);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int firstIndex() {
+        return firstIndex;
+    }
+
+    /**
+     * 逻辑索引对应的数组位置
+     * @param index
+     * @return
+     */
+    int slot(int index) {
+        return position(index - firstIndex);
+    }
+
+    /**
+     * 从第一个点开始的第n个点在数组中的位置
+     */
+    private int position(int n) {
+        int slot = head + n;
+        return slot >= values.length ? slot - values.length : slot;
+    }
+
+    float getValue(int index) {
+        return values[slot(index)];
+    }
+
+    String getExtX(int index) {
+        return extXs == null ? null : extXs[slot(index)];
+    }
+
+    float getY(int index) {
+        return ys[slot(index)];
+    }
+
+    void setY(int index, float y) {
+        ys[slot(index)] = y;
+    }
+
+    float getPercent(int index) {
+        return percents[slot(index)];
+    }
+
+    void setPercent(int index, float percent) {
+        percents[slot(index)] = percent;
+    }
+
+    /**
+     * 将所有点的动画进度置为指定值
+     * @param percent
+     */
+    void fillPercent(float percent) {
+        Arrays.fill(percents, percent);
+    }
+
+    /**
+     * 在末尾追加一个点，若已达到maxSize则先淘汰最旧的点
+     * @param value
+     * @param extX
+     * @param time      追加的时间，用于按时间淘汰
+     * @param maxSize   最多保留的点数，<=0表示不限制
+     * @return 淘汰的点数
+     */
+    int append(float value, String extX, long time, int maxSize) {
+        int evicted = 0;
+        lod = null;
+        if (maxSize > 0 && size >= maxSize) {
+            evicted = size - maxSize + 1;
+            evict(evicted);
+        }
+        if (size == values.length) {
+            grow(maxSize > 0 ? Math.min(maxSize, size + (size >> 1)) : size + (size >> 1));
+        }
+        if (times == null) {
+            // 之前填充的点视为此时加入
+            times = new long[values.length];
+            Arrays.fill(times, time);
+        }
+        int slot = position(size);
+        values[slot] = value;
+        ys[slot] = 0;
+        percents[slot] = 1f;
+        if (slopes != null) {
+            slopes[slot] = 0;
+        }
+        times[slot] = time;
+        if (minMaxTree != null) {
+            minMaxTree.update(slot, value);
+        }
+        if (extX != null && extXs == null) {
+            extXs = new String[values.length];
+        }
+        if (extXs != null) {
+            extXs[slot] = extX;
+        }
+        size++;
+        return evicted;
+    }
+
+    /**
+     * 丢弃所有点，之后作为数据源中[firstIndex, firstIndex + count)的窗口，通过{@link #set}填充
+     * @param firstIndex
+     * @param count
+     */
+    void resetWindow(int firstIndex, int count) {
+        if (values.length < count) {
+            values = new float[count];
+            ys = new float[count];
+            percents = new float[count];
+            if (slopes != null) {
+                slopes = new float[count];
+            }
+            extXs = null;
+        } else if (extXs != null) {
+            Arrays.fill(extXs, null);
+        }
+        Arrays.fill(percents, 0, count, 1f);
+        this.head = 0;
+        this.size = count;
+        this.firstIndex = firstIndex;
+        times = null;
+        minMaxTree = null;
+        lod = null;
+    }
+
+    /**
+     * 设置窗口中的一个点
+     * @param index 逻辑索引
+     * @param value 还未加载时为NaN
+     * @param extX
+     */
+    void set(int index, float value, String extX) {
+        int slot = slot(index);
+        values[slot] = value;
+        if (extX != null && extXs == null) {
+            extXs = new String[values.length];
+        }
+        if (extXs != null) {
+            extXs[slot] = extX;
+        }
+    }
+
+    /**
+     * 淘汰最旧的count个点
+     * @param count
+     */
+    void evict(int count) {
+        count = Math.min(count, size);
+        lod = null;
+        if (extXs != null) {
+            // 释放引用
+            for (int i = 0; i < count; i++) {
+                extXs[position(i)] = null;
+            }
+        }
+        head = position(count);
+        size -= count;
+        if (size == 0) {
+            head = 0;
+        }
+        // 新的第一个点已没有前一个点
+        updateSlopes(firstIndex, firstIndex + 1);
+    }
+
+    /**
+     * 从最旧的点开始，追加时间早于deadline的点的数量；
+     * 从未追加过数据的line不会被计入
+     * @param deadline
+     * @return
+     */
+    int countOlderThan(long deadline) {
+        if (times == null) {
+            return 0;
+        }
+        int count = 0;
+        while (count < size && times[position(count)] < deadline) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 扩容并将环形数据展开为从0开始
+     * @param capacity
+     */
+    private void grow(int capacity) {
+        capacity = Math.max(Math.max(capacity, size + 1), MIN_CAPACITY);
+        float[] newValues = new float[capacity];
+        float[] newYs = new float[capacity];
+        float[] newPercents = new float[capacity];
+        copyOut(values, newValues);
+        copyOut(ys, newYs);
+        copyOut(percents, newPercents);
+        if (slopes != null) {
+            float[] newSlopes = new float[capacity];
+            copyOut(slopes, newSlopes);
+            slopes = newSlopes;
+        }
+        if (times != null) {
+            long[] newTimes = new long[capacity];
+            copyOut(times, newTimes);
+            times = newTimes;
+        }
+        if (extXs != null) {
+            String[] newExtXs = new String[capacity];
+            copyOut(extXs, newExtXs);
+            extXs = newExtXs;
+        }
+        values = newValues;
+        ys = newYs;
+        percents = newPercents;
+        head = 0;
+        if (minMaxTree != null) {
+            minMaxTree = new MinMaxTree(values);
+        }
+    }
+
+    /**
+     * 建立区间最值索引，之后的追加会同步更新
+     */
+    void buildMinMaxTree() {
+        if (minMaxTree == null) {
+            minMaxTree = new MinMaxTree(values);
+        }
+    }
+
+    void releaseMinMaxTree() {
+        minMaxTree = null;
+    }
+
+    /**
+     * 点数足够多时建立多级聚合，只用于填充后不再变化的line
+     */
+    void buildLod() {
+        if (lod == null && firstIndex == 0 && size >= LodPyramid.MIN_SIZE) {
+            lod = new LodPyramid(this);
+        }
+    }
+
+    /**
+     * 开始维护每个点的切线斜率，并按当前的y坐标计算一次
+     */
+    void buildSlopes() {
+        if (slopes == null) {
+            slopes = new float[values.length];
+            updateSlopes(firstIndex, firstIndex + size);
+        }
+    }
+
+    void releaseSlopes() {
+        slopes = null;
+    }
+
+    /**
+     * 按当前的y坐标重新计算[from, to)之间的切线斜率，超出范围的部分被忽略。<br>
+     * 取两侧割线斜率的调和平均，两侧方向不同（极值点）时为0，
+     * 由此得到的三次曲线在相邻两点之间单调，不会超出两点的范围；
+     * 两端以及与NaN相邻的点只有一侧的割线，直接使用它
+     * @param from
+     * @param to
+     */
+    void updateSlopes(int from, int to) {
+        if (slopes == null) {
+            return;
+        }
+        from = Math.max(from, firstIndex);
+        to = Math.min(to, firstIndex + size);
+        int last = firstIndex + size - 1;
+        for (int i = from; i < to; i++) {
+            float before = i > firstIndex ? deltaOfY(i - 1) : Float.NaN;
+            float after = i < last ? deltaOfY(i) : Float.NaN;
+            float slope;
+            if (Float.isNaN(before)) {
+                slope = Float.isNaN(after) ? 0 : after;
+            } else if (Float.isNaN(after)) {
+                slope = before;
+            } else if (before * after <= 0) {
+                slope = 0;
+            } else {
+                slope = 2 * before * after / (before + after);
+            }
+            slopes[slot(i)] = slope;
+        }
+    }
+
+    /**
+     * @return 第index + 1个点与第index个点的y之差，任一点的值为NaN时为NaN
+     */
+    private float deltaOfY(int index) {
+        int a = slot(index), b = slot(index + 1);
+        if (Float.isNaN(values[a]) || Float.isNaN(values[b])) {
+            return Float.NaN;
+        }
+        return ys[b] - ys[a];
+    }
+
+    /**
+     * 在[from, to)区间内查找最值，已建立索引时为O(log n)，否则逐个遍历
+     * @param from
+     * @param to
+     * @param minAndMax 0为最小值，1为最大值，结果与已有的值合并
+     */
+    void queryMinAndMax(int from, int to, float[] minAndMax) {
+        if (minMaxTree == null) {
+            findMinAndMax(from, to, minAndMax);
+            return;
+        }
+        // 环形数组最多分为两段连续的区间
+        int slot = slot(from);
+        int remain = to - from;
+        while (remain > 0) {
+            int end = Math.min(values.length, slot + remain);
+            minMaxTree.query(slot, end, minAndMax);
+            remain -= end - slot;
+            slot = 0;
+        }
+    }
+
+    /**
+     * 将环形数组中的有效数据按逻辑顺序拷贝到dst的开头
+     */
+    private void copyOut(Object src, Object dst) {
+        int first = Math.min(size, values.length - head);
+        System.arraycopy(src, head, dst, 0, first);
+        System.arraycopy(src, 0, dst, first, size - first);
+    }
+
+    /**
+     * 在[from, to)区间内查找最小值和最大值，结果与minAndMax中已有的值合并
+     * @param from
+     * @param to
+     * @param minAndMax 0为最小值，1为最大值
+     */
+    void findMinAndMax(int from, int to, float[] minAndMax) {
+        float[] values = this.values;
+        float min = minAndMax[0], max = minAndMax[1];
+        // 环形数组最多分为两段连续的区间
+        int slot = slot(from);
+        int remain = to - from;
+        while (remain > 0) {
+            int end = Math.min(values.length, slot + remain);
+            for (int i = slot; i < end; i++) {
+                float value = values[i];
+                if (value < min) {
+                    min = value;
+                }
+                if (value > max) {
+                    max = value;
+                }
+            }
+            remain -= end - slot;
+            slot = 0;
+        }
+        minAndMax[0] = min;
+        minAndMax[1] = max;
+    }
+
+    /**
+     * 查找所有点中的最小值和最大值，结果与minAndMax中已有的值合并
+     * @param minAndMax
+     */
+    void findMinAndMax(float[] minAndMax) {
+        findMinAndMax(firstIndex, firstIndex + size, minAndMax);
+    }
+
+    /**
+     * 查找所有line中的最小值和最大值，点数较多时按line和区间分片后并行查找
+     * @param lines
+     * @param minAndMax 0为最小值，1为最大值
+     */
+    static void findMinAndMax(List<Series> lines, float[] minAndMax) {
+        minAndMax[0] = Float.POSITIVE_INFINITY;
+        minAndMax[1] = Float.NEGATIVE_INFINITY;
+        long total = 0;
+        for (int j = 0; j < lines.size(); j++) {
+            total += lines.get(j).size();
+        }
+        if (total < PARALLEL_THRESHOLD || Workers.parallelism() < 2) {
+            for (int j = 0; j < lines.size(); j++) {
+                lines.get(j).findMinAndMax(minAndMax);
+            }
+            return;
+        }
+        // 每个分片至少包含PARALLEL_THRESHOLD/2个点，避免任务调度的开销大于查找本身
+        int chunk = (int) Math.max(PARALLEL_THRESHOLD / 2, total / (Workers.parallelism() * 2));
+        ExecutorService executor = Workers.get();
+        List<Future<float[]>> futures = new ArrayList<>();
+        for (int j = 0; j < lines.size(); j++) {
+            final Series line = lines.get(j);
+            int last = line.firstIndex + line.size();
+            for (int from = line.firstIndex; from < last; from += chunk) {
+                final int start = from, end = Math.min(last, from + chunk);
+                futures.add(executor.submit(new Callable<float[]>() {
+                    @Override
+                    public float[] call() throws Exception {
+                        float[] result = {Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+                        line.findMinAndMax(start, end, result);
+                        return result;
+                    }
+                }));
+            }
+        }
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                float[] result = futures.get(i).get();
+                minAndMax[0] = Math.min(minAndMax[0], result[0]);
+                minAndMax[1] = Math.max(minAndMax[1], result[1]);
+            }
+        } catch (InterruptedException e) {
+            // 在后台准备数据时被取消，结果已无意义
+            for (int i = 0; i < futures.size(); i++) {
+                futures.get(i).cancel(true);
+            }
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 线程池不可用时退化为单线程查找
+            for (int i = 0; i < futures.size(); i++) {
+                futures.get(i).cancel(true);
+            }
+            minAndMax[0] = Float.POSITIVE_INFINITY;
+            minAndMax[1] = Float.NEGATIVE_INFINITY;
+            for (int j = 0; j < lines.size(); j++) {
+                lines.get(j).findMinAndMax(minAndMax);
+            }
+        }
+    }
+}
@@ -16,34 +16,18 @@
 
 package tech.linjiang.suitlines;
 
-import android.animation.TimeInterpolator;
-import android.animation.ValueAnimator;
-import android.graphics.PointF;
-
 /**
  * https://github.com/whataa
+ * <br>仅作为数据的输入，填充时会被转化为Series，图表内部不再持有
  */
 public class Unit implements Comparable<Unit>, Cloneable {
 
-    static long DURATION = 800;
-    private ValueAnimator VALUEANIMATOR = ValueAnimator.ofFloat(0, 1);
-
     /**
      * 当前点的值
      */
     private float value;
     // 当前点的额外信息（可选，x轴）
     private String extX;
-    /**
-     * 当前点的坐标信息,都是相对的canvas而不是linesArea
-     */
-    private PointF xy;
-
-    /**
-     * 当前点的动画进度，
-     * 默认为1表示无动画
-     */
-    private float percent = 1f;
 
     public Unit(float value) {
         this.value = value;
@@ -58,20 +42,6 @@ public class Unit implements Comparable<Unit>, Cloneable {
     public float getValue() {
         return value;
     }
-    void setXY(PointF xy) {
-        this.xy = xy;
-    }
-    PointF getXY() {
-        return xy;
-    }
-    void setPercent(float percent) {
-        this.percent = percent;
-    }
-
-    float getPercent() {
-        return percent;
-    }
-
     public void setExtX(String extX) {
         this.extX = extX;
     }
@@ -81,36 +51,6 @@ public class Unit implements Comparable<Unit>, Cloneable {
     }
 
 
-    void cancelToEndAnim() {
-        if (VALUEANIMATOR.isRunning()) {
-            VALUEANIMATOR.cancel();
-        }
-        percent = 1f;
-    }
-
-    void startAnim(TimeInterpolator value) {
-        if (percent > 0 || VALUEANIMATOR.isRunning()) {
-            return;
-        }
-        // 如果value小于一定阈值就不开启动画
-        if (Math.abs((int)this.value) < 0.1) {
-            percent = 1;
-            return;
-        }
-        VALUEANIMATOR.setFloatValues(0, 1);
-        VALUEANIMATOR.setDuration(DURATION);
-        VALUEANIMATOR.setInterpolator(value);
-        VALUEANIMATOR.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                percent = (float) animation.getAnimatedValue();
-            }
-        });
-        VALUEANIMATOR.start();
-    }
-
-
-
     @Override
     public int compareTo(Unit o) {
         if (value == o.value) {
@@ -133,7 +73,8 @@ public class Unit implements Comparable<Unit>, Cloneable {
     @Override
     public String toString() {
         return "Unit{" +
-                "xy=" + xy +
+                "value=" + value +
+                ", extX=" + extX +
                 '}';
     }
 
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import java.util.List;
+
+/**
+ * 与绘制无关的布局计算：y轴区间、两点之间的距离、滚动边界、缩放范围、可见区间以及点击位置对应的索引。<br>
+ * 只依赖参数中的基本类型、{@link Series}和{@link Projection}，不依赖View，
+ * SuitLines在主线程中、Snapshot在后台线程中都使用它们。
+ */
+final class Viewport {
+
+    private Viewport() {
+    }
+
+    static int getCeil5(float num) {
+        boolean isNegative = num < 0;
+        return (((int) ((isNegative ? -num : num) + 4.9f)) / 5 * 5) * (isNegative ? -1 : 1);
+    }
+
+    /**
+     * 向下取5的倍数
+     */
+    static int getFloor5(float num) {
+        return (int) Math.floor(num / 5) * 5;
+    }
+
+    /**
+     * 向上取5的倍数
+     */
+    static int getUpper5(float num) {
+        return (int) Math.ceil(num / 5) * 5;
+    }
+
+    /**
+     * 每组数据的点数，追加数据的过程中各组可能暂时不同，取最小值
+     */
+    static int calcDataSize(List<Series> lines) {
+        int size = lines.isEmpty() ? 0 : Integer.MAX_VALUE;
+        for (int j = 0; j < lines.size(); j++) {
+            size = Math.min(size, lines.get(j).size());
+        }
+        return size;
+    }
+
+    /**
+     * 一次遍历得到所有line的最值，并由此得到y轴的最小和最大刻度
+     * @param lines
+     * @param actualMinAndMax   输出实际的最值
+     * @param minAndMaxOfY      输出y轴的刻度
+     */
+    static void calcRangeOfY(List<Series> lines, float[] actualMinAndMax, float[] minAndMaxOfY) {
+        Series.findMinAndMax(lines, actualMinAndMax);
+        minAndMaxOfY[0] = getCeil5(Math.min(actualMinAndMax[0], 0));
+        minAndMaxOfY[1] = getCeil5(Math.max(actualMinAndMax[1], 0));
+    }
+
+    /**
+     * 根据可见点数计算两点之间的距离
+     * @param width linesArea的宽度
+     */
+    static float calcRealBetween(int dataSize, int maxOfVisible, float width) {
+        int realNum = Math.min(dataSize, maxOfVisible);
+        // 只有一个点时（追加数据的开始），避免除以0
+        return realNum > 1 ? width / (realNum - 1) : width;
+    }
+
+    /**
+     * @param left  linesArea的左边
+     * @param width linesArea的宽度
+     */
+    static float calcMaxOffset(Projection projection, int dataSize, float left, float width) {
+        return Math.max(0, Math.abs(projection.x(dataSize - 1)) - width - left);
+    }
+
+    /**
+     * 最多缩小到maxCount个点都可见，最多放大到只有两个点可见
+     * @param zoom
+     * @param between   未缩放时两点之间的距离
+     * @param maxCount  缩小后最多可见的点数
+     * @param width     linesArea的宽度
+     * @return
+     */
+    static float clampZoom(float zoom, float between, int maxCount, float width) {
+        if (maxCount < 2) {
+            return 1;
+        }
+        float minZoom = Math.min(1, width / (maxCount - 1) / between);
+        float maxZoom = Math.max(1, width / between);
+        return Math.max(minZoom, Math.min(maxZoom, zoom));
+    }
+
+    /**
+     * 可见区域中最多的点数，未缩放时为maxOfVisible
+     * @param zoom
+     * @param between   缩放后两点之间的距离
+     * @param maxOfVisible
+     * @param width     linesArea的宽度
+     * @return
+     */
+    static int countOfVisible(float zoom, float between, int maxOfVisible, float width) {
+        if (zoom == 1 || between <= 0) {
+            return maxOfVisible;
+        }
+        return (int) Math.ceil(width / between) + 1;
+    }
+
+    /**
+     * 1. ax+b >= y
+     * 2. a(x+1)+b <= y
+     * 得到： (int)x = (y-b) / a
+     * 由于 y = b - offset
+     * 所以：(int)x = |offset| / a
+     * @param edge  用于存放结果，为null时才创建
+     * @return
+     */
+    static int[] findEdge(float offset, float maxOffset, float between, int dataSize,
+                          int countOfVisible, int[] edge) {
+        int startIndex, endIndex;
+        if (offset == 0) {// 不可滑动或当前位于最左边
+            startIndex = 0;
+            endIndex = Math.min(dataSize - 1, countOfVisible - 1);
+        } else if (Math.abs(offset) == maxOffset) {// 可滑动且当前位于最右边
+            endIndex = dataSize - 1;
+            startIndex = Math.max(0, endIndex - countOfVisible + 1);
+        } else {
+            startIndex = (int) (Math.abs(offset) / between);
+            // 缩放后可见点数不再是整数，末尾可能超出
+            endIndex = Math.min(dataSize - 1, startIndex + countOfVisible);
+        }
+        if (edge == null) {
+            edge = new int[2];
+        }
+        edge[0] = startIndex;
+        edge[1] = endIndex;
+        return edge;
+    }
+
+    /**
+     * 找到当前可见区间内合适的两个边缘点，注意如果边缘点不在可见区间的边缘，则需要包含下一个不可见的点
+     * @param left  linesArea的左边
+     * @param right linesArea的右边
+     * @return
+     */
+    static int[] searchEdge(Projection projection, float offset, float maxOffset, int dataSize,
+                            int countOfVisible, float left, float right) {
+        int startIndex = 0, endIndex = dataSize - 1;
+        if (offset == 0) {// 不可滑动或当前位于最左边
+            startIndex = 0;
+            endIndex = Math.min(dataSize - 1, countOfVisible - 1);
+        } else if (Math.abs(offset) == maxOffset) {// 可滑动且当前位于最右边
+            endIndex = dataSize - 1;
+            startIndex = Math.max(0, endIndex - countOfVisible + 1);
+        } else {
+            float startX = left - offset;
+            float endX = right - offset;
+            if (dataSize > countOfVisible) {
+                // 找到指定区间的第一个被发现的点
+                int suitKey = 0;
+                int low = 0;
+                int high = dataSize - 1;
+                while (low <= high) {
+                    int mid = (low + high) >>> 1;
+                    float midX = projection.x(mid);
+                    if (midX < startX) {
+                        low = mid + 1;
+                    } else if (midX > endX) {
+                        high = mid - 1;
+                    } else {
+                        suitKey = mid;
+                        break;
+                    }
+                }
+                int bakKey = suitKey;
+                // 先左边
+                while (suitKey >= 0) {
+                    startIndex = suitKey;
+                    if (projection.x(suitKey) <= startX) {
+                        break;
+                    }
+                    suitKey--;
+                }
+                suitKey = bakKey;
+                // 再右边
+                while (suitKey < dataSize) {
+                    endIndex = suitKey;
+                    if (projection.x(suitKey) >= endX) {
+                        break;
+                    }
+                    suitKey++;
+                }
+            }
+        }
+        return new int[]{startIndex, endIndex};
+    }
+
+    /**
+     * 点击位置对应的索引，只有距离某个点不超过0.4个间距时才有效
+     * @param x         相对于第0个点所在坐标系的x，即已去掉offset
+     * @param left      linesArea的左边
+     * @param between
+     * @return 无效时为-1
+     */
+    static int indexAt(float x, float left, float between) {
+        float index = (x - left) / between;
+        if ((index - (int) index) > 0.6f) {
+            return (int) index + 1;
+        } else if ((index - (int) index) < 0.4f) {
+            return (int) index;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 所有SuitLines共享的后台线程池，首次使用时才创建：<br>
+ * {@link #get()}用于大数据量时的并行计算；<br>
+ * {@link #prepare()}是单个线程，用于在主线程之外准备填充的数据，
+ * 它会等待并行计算的结果，所以不能与前者共用同一个线程池，否则可能互相等待；<br>
+ * {@link #load()}是单个线程，用于从数据源分页加载，数据源的读取可能很慢，
+ * 单独使用一个线程，使它与准备填充的数据互不阻塞。
+ */
+class Workers {
+
+    private static final int PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static ExecutorService executor;
+    private static ExecutorService preparer;
+    private static ExecutorService loader;
+
+    private Workers() {
+    }
+
+    static int parallelism() {
+        return PARALLELISM;
+    }
+
+    static synchronized ExecutorService get() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(PARALLELISM, newThreadFactory("SuitLines-worker-"));
+        }
+        return executor;
+    }
+
+    static synchronized ExecutorService prepare() {
+        if (preparer == null) {
+            preparer = Executors.newSingleThreadExecutor(newThreadFactory("SuitLines-prepare-"));
+        }
+        return preparer;
+    }
+
+    static synchronized ExecutorService load() {
+        if (loader == null) {
+            loader = Executors.newSingleThreadExecutor(newThreadFactory("SuitLines-load-"));
+        }
+        return loader;
+    }
+
+    private static ThreadFactory newThreadFactory(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + count.getAndIncrement());
+                // 不阻止进程退出，且不与UI线程抢占
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        };
+    }
+}
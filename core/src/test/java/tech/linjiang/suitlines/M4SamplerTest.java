@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * M4聚合在断开处的输出：NaN使一列提前输出后重新开始，一列可能超过4个顶点。
+ */
+public class M4SamplerTest {
+
+    private static final float HEIGHT = 100;
+
+    private final M4Sampler sampler = new M4Sampler();
+    private final Projection projection = new Projection();
+
+    @Before
+    public void setUp() {
+        // 每个像素列有10个点
+        projection.set(0, 0.1f, 0, HEIGHT, 0, 100, 0);
+    }
+
+    @Test
+    public void nanInsideEveryColumn() {
+        float[] values = zigzag(100);
+        for (int i = 5; i < values.length; i += 10) {
+            values[i] = Float.NaN;
+        }
+        Series line = line(values);
+
+        int count = sampler.sample(line, 0, values.length - 1, projection, 0, HEIGHT);
+
+        // 每个NaN之后开始新的一段，每段是半列中的4个点
+        assertEquals(11, sampler.getSegmentCount());
+        assertSegments(count);
+        assertTrue(count > 10 * 4);
+    }
+
+    @Test
+    public void nanBlockInsideEveryColumn() {
+        float[] values = zigzag(256);
+        // 第1级每块2个点，每个像素列有8块，其中第5块整块都是NaN
+        for (int i = 8; i < values.length; i += 16) {
+            values[i] = Float.NaN;
+            values[i + 1] = Float.NaN;
+        }
+        Series line = line(values);
+        projection.setBetween(1 / 16f);
+        LodPyramid lod = new LodPyramid(line);
+
+        int count = sampler.sample(lod, 1, 0, values.length - 1, projection, 0);
+
+        // 每个NaN块之后开始新的一段，每段是半列中的最值
+        assertEquals(17, sampler.getSegmentCount());
+        assertSegments(count);
+        assertEquals(32 * 2, count);
+    }
+
+    /**
+     * 数据源窗口中第1、3页还未加载，页的边界落在像素列中间，可见区间的首尾在未加载的页中
+     */
+    @Test
+    public void windowStartingOrEndingInsideAPageGap() {
+        int page = 1024;
+        float[] values = zigzag(page * 5);
+        Series line = new Series(0);
+        line.resetWindow(0, values.length);
+        for (int i = 0; i < values.length; i++) {
+            boolean loaded = (i / page) % 2 == 0;
+            line.set(i, loaded ? values[i] : Float.NaN, null);
+        }
+        projection.setBetween(0.3f);
+        projection.apply(line, 0, values.length);
+
+        assertSampled(line, 1500, 3500, 1, page);
+        assertSampled(line, 500, 3500, 2, page);
+        assertSampled(line, 1500, 4600, 2, page);
+        assertSampled(line, 1030, 2040, 0, page);
+    }
+
+    /**
+     * 逐点和按块聚合都只在已加载的页中输出顶点，每个已加载的页是一段
+     */
+    private void assertSampled(Series line, int startIndex, int endIndex, int segments, int page) {
+        line.lod = null;
+        int count = sampler.sample(line, startIndex, endIndex, projection, 0.5f, HEIGHT);
+        assertEquals(segments, sampler.getSegmentCount());
+        assertSegments(count);
+        assertOnlyInLoadedPages(count, page);
+
+        line.lod = new LodPyramid(line);
+        count = sampler.sample(line.lod, 1, startIndex, endIndex, projection, 0.5f);
+        assertEquals(segments, sampler.getSegmentCount());
+        assertSegments(count);
+        assertOnlyInLoadedPages(count, page);
+    }
+
+    private void assertOnlyInLoadedPages(int count, int page) {
+        float[] vertexes = sampler.getVertexes();
+        for (int i = 0; i < count; i++) {
+            int index = Math.round(vertexes[i * 2] / projection.getBetween());
+            assertEquals("第" + i + "个顶点在未加载的页中", 0, (index / page) % 2);
+        }
+    }
+
+    /**
+     * 每列中的点交替变化，第一个、最小、最大、最后一个都不相同
+     */
+    private static float[] zigzag(int size) {
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i % 2 == 0 ? 20 + i % 7 : 80 - i % 5;
+        }
+        return values;
+    }
+
+    private Series line(float[] values) {
+        Series line = new Series(values, null);
+        projection.apply(line, 0, values.length);
+        return line;
+    }
+
+    /**
+     * 每段的起点递增且都是有效的顶点，段内的x不减小
+     */
+    private void assertSegments(int count) {
+        int[] starts = sampler.getSegmentStarts();
+        float[] vertexes = sampler.getVertexes();
+        if (sampler.getSegmentCount() > 0) {
+            assertEquals(0, starts[0]);
+        }
+        for (int k = 1; k < sampler.getSegmentCount(); k++) {
+            assertTrue(starts[k] > starts[k - 1]);
+            assertTrue(starts[k] < count);
+        }
+        for (int i = 1; i < count; i++) {
+            assertTrue(vertexes[i * 2] >= vertexes[(i - 1) * 2]);
+        }
+    }
+}
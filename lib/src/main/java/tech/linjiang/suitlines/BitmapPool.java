@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 进程内所有图表共享的bitmap池，y轴缓存和tile不再使用的bitmap放回这里，而不是recycle后重新创建。<br>
+ * 按分配的内存以2的幂分组，取出时只在所需内存所在的一组和更大的一组中查找，
+ * 避免小的buffer长期占用大块内存；API >= 19时通过reconfigure改变尺寸和config后复用，
+ * 否则只复用尺寸和config都相同的bitmap。<br>
+ * 放回的bitmap可能已经在当前帧中绘制过，所以先暂存，当前帧结束后（主线程的下一个消息）才能被取出，
+ * 否则同一帧中的其它缓存或其它图表会在它被显示之前改写它。<br>
+ * 池中的bitmap数量很少，直接按列表查找；超过{@link #MAX_BYTES}时淘汰最早放入的。<br>
+ * 只在主线程中使用。
+ */
+final class BitmapPool {
+
+    static final int MAX_BYTES = 8 * 1024 * 1024;
+
+    /**
+     * 按放入的顺序，最早放入的在前面
+     */
+    private static final List<Bitmap> pool = new ArrayList<>();
+    private static int bytes;
+    /**
+     * 当前帧中放回的bitmap
+     */
+    private static final List<Bitmap> pending = new ArrayList<>();
+    private static Handler handler;
+    private static final Runnable publishPending = new Runnable() {
+        @Override
+        public void run() {
+            for (int i = 0; i < pending.size(); i++) {
+                add(pending.get(i));
+            }
+            pending.clear();
+        }
+    };
+
+    private BitmapPool() {
+    }
+
+    /**
+     * 得到一个透明的bitmap
+     * @param width
+     * @param height
+     * @param config
+     * @return
+     */
+    static Bitmap obtain(int width, int height, Bitmap.Config config) {
+        int need = width * height * bytesPerPixel(config);
+        boolean canReconfigure = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+        int bucket = bucketOf(need);
+        // 从最近放入的开始查找
+        for (int i = pool.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = pool.get(i);
+            boolean isSuitable;
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+                isSuitable = true;
+            } else if (canReconfigure) {
+                int size = sizeOf(bitmap);
+                int delta = bucketOf(size) - bucket;
+                isSuitable = size >= need && delta >= 0 && delta <= 1;
+            } else {
+                isSuitable = false;
+            }
+            if (!isSuitable) {
+                continue;
+            }
+            pool.remove(i);
+            bytes -= sizeOf(bitmap);
+            if (bitmap.getWidth() != width || bitmap.getHeight() != height || bitmap.getConfig() != config) {
+                bitmap.reconfigure(width, height, config);
+            }
+            bitmap.eraseColor(Color.TRANSPARENT);
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * 放回不再使用的bitmap，之后不能再绘制它；当前帧结束后才会被取出
+     * @param bitmap    可为null
+     */
+    static void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (pending.isEmpty()) {
+            if (handler == null) {
+                handler = new Handler(Looper.getMainLooper());
+            }
+            handler.post(publishPending);
+        }
+        pending.add(bitmap);
+    }
+
+    private static void add(Bitmap bitmap) {
+        int size = sizeOf(bitmap);
+        if (!bitmap.isMutable() || size > MAX_BYTES) {
+            bitmap.recycle();
+            return;
+        }
+        pool.add(bitmap);
+        bytes += size;
+        while (bytes > MAX_BYTES) {
+            Bitmap eldest = pool.remove(0);
+            bytes -= sizeOf(eldest);
+            eldest.recycle();
+        }
+    }
+
+    private static int sizeOf(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    /**
+     * @return 不小于size的最小的2的幂的指数
+     */
+    private static int bucketOf(int size) {
+        return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import java.util.Arrays;
+
+/**
+ * 一帧中各阶段的耗时（纳秒）和计数，见{@link SuitLines#setMetricsListener(SuitLines.MetricsListener)}。<br>
+ * 同一个实例在每帧中复用，只在回调中有效；以get*Count()结尾的是从设置listener开始的累计值。<br>
+ * 每个阶段同时输出同名的{@link android.os.Trace}区间（API 18及以上），可以在systrace/Perfetto中查看。
+ */
+public class FrameMetrics {
+
+    /**
+     * 处理标记的阶段：y轴区间、布局、所有点的坐标
+     */
+    public static final int RESOLVE = 0;
+    /**
+     * 连接path或线段，包括数据源窗口的填充、按可见区域调整y轴以及动画进度的计算
+     */
+    public static final int BUILD_PATHS = 1;
+    /**
+     * 绘制path或线段，包括直接复用上一帧的path
+     */
+    public static final int DRAW_PATHS = 2;
+    /**
+     * 绘制tile，包括重新绘制失效的tile
+     */
+    public static final int DRAW_TILES = 3;
+    public static final int DRAW_X = 4;
+    /**
+     * 包括重新绘制y轴的缓存
+     */
+    public static final int DRAW_Y = 5;
+    public static final int EDGE_EFFECTS = 6;
+    static final int PHASE_COUNT = 7;
+
+    private static final String TRACE_FRAME = "SuitLines.frame";
+    private static final String[] TRACE_NAMES = {
+            "SuitLines.resolve", "SuitLines.buildPaths", "SuitLines.drawPaths", "SuitLines.drawTiles",
+            "SuitLines.drawX", "SuitLines.drawY", "SuitLines.edgeEffects"};
+
+    private final long[] nanos = new long[PHASE_COUNT];
+    private final long[] starts = new long[PHASE_COUNT];
+    private long frameStart;
+    private long frameNanos;
+    private int pointCount;
+    private boolean isPathsRebuilt, isPathsReused, isYBufferRegenerated, isAnimFrame;
+    private long frameCount, rebuildCount, reuseCount, yBufferCount, animFrameCount;
+
+    FrameMetrics() {
+    }
+
+    void beginFrame() {
+        Arrays.fill(nanos, 0);
+        pointCount = 0;
+        isPathsRebuilt = isPathsReused = isYBufferRegenerated = isAnimFrame = false;
+        Util.beginTrace(TRACE_FRAME);
+        frameStart = System.nanoTime();
+    }
+
+    void endFrame() {
+        frameNanos = System.nanoTime() - frameStart;
+        Util.endTrace();
+        frameCount++;
+        rebuildCount += isPathsRebuilt ? 1 : 0;
+        reuseCount += isPathsReused ? 1 : 0;
+        yBufferCount += isYBufferRegenerated ? 1 : 0;
+        animFrameCount += isAnimFrame ? 1 : 0;
+    }
+
+    void begin(int phase) {
+        Util.beginTrace(TRACE_NAMES[phase]);
+        starts[phase] = System.nanoTime();
+    }
+
+    void end(int phase) {
+        nanos[phase] += System.nanoTime() - starts[phase];
+        Util.endTrace();
+    }
+
+    void addPoints(int count) {
+        pointCount += count;
+    }
+
+    void markPathsRebuilt() {
+        isPathsRebuilt = true;
+    }
+
+    void markPathsReused() {
+        isPathsReused = true;
+    }
+
+    void markYBufferRegenerated() {
+        isYBufferRegenerated = true;
+    }
+
+    void markAnimFrame() {
+        isAnimFrame = true;
+    }
+
+    /**
+     * @param phase 如{@link #RESOLVE}
+     * @return 该阶段在本帧中的耗时，没有经过该阶段时为0
+     */
+    public long getNanos(int phase) {
+        return nanos[phase];
+    }
+
+    /**
+     * @return 整帧的耗时，从draw开始到边缘效果绘制完成
+     */
+    public long getFrameNanos() {
+        return frameNanos;
+    }
+
+    /**
+     * @return 本帧中绘制的点数（所有line），tile只计算重新绘制的部分
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * @return 本帧是否重新连接了path
+     */
+    public boolean isPathsRebuilt() {
+        return isPathsRebuilt;
+    }
+
+    /**
+     * @return 本帧是否直接复用了上一帧的path
+     */
+    public boolean isPathsReused() {
+        return isPathsReused;
+    }
+
+    public boolean isYBufferRegenerated() {
+        return isYBufferRegenerated;
+    }
+
+    public boolean isAnimFrame() {
+        return isAnimFrame;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * 与{@link #getReuseCount()}一起得到path缓存的命中率
+     */
+    public long getRebuildCount() {
+        return rebuildCount;
+    }
+
+    public long getReuseCount() {
+        return reuseCount;
+    }
+
+    public long getYBufferCount() {
+        return yBufferCount;
+    }
+
+    public long getAnimFrameCount() {
+        return animFrameCount;
+    }
+}
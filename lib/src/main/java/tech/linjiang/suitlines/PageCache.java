@@ -0,0 +1,279 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link SuitLines.DataSource}的分页缓存：<br>
+ * 按PAGE_SIZE个点分页，缺少的页在单独的后台线程（{@link Workers#load()}）中加载，加载完成后在主线程中放入并回调；
+ * 最多缓存maxPages页，超出时淘汰最久未使用且不在当前需要范围内的页；
+ * 排队中的页在开始加载前若已不再需要（快速滚动时），直接跳过；
+ * 数据源抛出异常时记录日志，该页在一段时间后再次需要时重新加载，连续失败时等待的时间加倍。<br>
+ * 除了后台加载，其它方法都只在主线程中调用。
+ */
+class PageCache {
+
+    static final int PAGE_SIZE = 1024;
+    private static final String TAG = "SuitLines";
+    /**
+     * 加载失败后第一次重试前等待的时间，之后每次失败加倍，最多加倍MAX_RETRY_SHIFT次
+     */
+    private static final long RETRY_DELAY = 1000;
+    private static final int MAX_RETRY_SHIFT = 5;
+
+    private final SuitLines.DataSource source;
+    private final int lineCount;
+    private final int count;
+    private final int maxPages;
+    private final Runnable onPageLoaded;
+    /**
+     * 使用单独的Handler，SuitLines移除自己的消息时不会影响加载结果
+     */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<Page> pages = new ArrayList<>();
+    /**
+     * 每页是否正在加载
+     */
+    private final boolean[] loading;
+    /**
+     * 每页连续加载失败的次数，以及可以再次加载的时间
+     */
+    private final int[] failures;
+    private final long[] retryAt;
+    /**
+     * 最近一次需要的页区间[wantedFrom, wantedTo]，后台据此跳过不再需要的页
+     */
+    private volatile int wantedFrom, wantedTo = -1;
+    private volatile boolean isReleased;
+    private long clock;
+    /**
+     * 每放入一页递增，用于判断窗口是否需要重新填充
+     */
+    private int version;
+    /**
+     * 最近一次查找到的页
+     */
+    private Page lastFound;
+
+    /**
+     * @param source
+     * @param maxPages      最多缓存的页数
+     * @param onPageLoaded  有新的页加载完成时在主线程中回调
+     */
+    PageCache(SuitLines.DataSource source, int maxPages, Runnable onPageLoaded) {
+        this.source = source;
+        this.lineCount = source.getLineCount();
+        this.count = source.getCount();
+        this.maxPages = maxPages;
+        this.onPageLoaded = onPageLoaded;
+        this.loading = new boolean[(count + PAGE_SIZE - 1) / PAGE_SIZE];
+        this.failures = new int[loading.length];
+        this.retryAt = new long[loading.length];
+    }
+
+    int getLineCount() {
+        return lineCount;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * 需要[from, to)之间的点，缺少的页开始异步加载
+     * @param from
+     * @param to
+     */
+    void request(int from, int to) {
+        if (to <= from) {
+            return;
+        }
+        int first = from / PAGE_SIZE, last = (to - 1) / PAGE_SIZE;
+        wantedFrom = first;
+        wantedTo = last;
+        long now = SystemClock.uptimeMillis();
+        for (int p = first; p <= last; p++) {
+            if (findPage(p) != null || loading[p] || now < retryAt[p]) {
+                continue;
+            }
+            loading[p] = true;
+            load(p);
+        }
+    }
+
+    /**
+     * @param line
+     * @param index
+     * @return 所在的页还未加载时为NaN
+     */
+    float getValue(int line, int index) {
+        Page page = findPage(index / PAGE_SIZE);
+        return page == null ? Float.NaN : page.values[line][index % PAGE_SIZE];
+    }
+
+    String getLabel(int index) {
+        Page page = findPage(index / PAGE_SIZE);
+        return page == null || page.labels == null ? null : page.labels[index % PAGE_SIZE];
+    }
+
+    /**
+     * 不再放入任何页，之后完成的加载都被丢弃
+     */
+    void release() {
+        isReleased = true;
+        pages.clear();
+        lastFound = null;
+    }
+
+    private Page findPage(int index) {
+        if (lastFound != null && lastFound.index == index) {
+            lastFound.lastUsed = ++clock;
+            return lastFound;
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            if (page.index == index) {
+                page.lastUsed = ++clock;
+                lastFound = page;
+                return page;
+            }
+        }
+        return null;
+    }
+
+    private void load(final int index) {
+        Workers.load().execute(new Runnable() {
+            @Override
+            public void run() {
+                Page page = null;
+                RuntimeException error = null;
+                try {
+                    page = isReleased || index < wantedFrom || index > wantedTo ? null : read(index);
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                final Page result = page;
+                final RuntimeException failure = error;
+                // 无论成功与否都回到主线程清除loading，否则该页再也不会被加载
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isReleased) {
+                            return;
+                        }
+                        loading[index] = false;
+                        if (failure != null) {
+                            onLoadFailed(index, failure);
+                        } else if (result != null) {
+                            failures[index] = 0;
+                            put(result);
+                            onPageLoaded.run();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 在主线程中记录失败，等待一段时间后刷新，若该页仍被需要则重新加载
+     */
+    private void onLoadFailed(int index, RuntimeException e) {
+        Log.w(TAG, "从DataSource加载第" + index + "页失败", e);
+        long delay = RETRY_DELAY << Math.min(failures[index], MAX_RETRY_SHIFT);
+        failures[index]++;
+        retryAt[index] = SystemClock.uptimeMillis() + delay;
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (!isReleased) {
+                    onPageLoaded.run();
+                }
+            }
+        }, delay);
+    }
+
+    /**
+     * 在后台线程中从数据源读取一页
+     */
+    private Page read(int index) {
+        int from = index * PAGE_SIZE;
+        int size = Math.min(PAGE_SIZE, count - from);
+        Page page = new Page();
+        page.index = index;
+        page.values = new float[lineCount][size];
+        for (int j = 0; j < lineCount; j++) {
+            for (int i = 0; i < size; i++) {
+                page.values[j][i] = source.getValue(j, from + i);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            String label = source.getLabel(from + i);
+            if (label != null) {
+                if (page.labels == null) {
+                    page.labels = new String[size];
+                }
+                page.labels[i] = label;
+            }
+        }
+        return page;
+    }
+
+    private void put(Page page) {
+        page.lastUsed = ++clock;
+        pages.add(page);
+        version++;
+        while (pages.size() > maxPages) {
+            int eldest = -1;
+            for (int i = 0; i < pages.size(); i++) {
+                Page cur = pages.get(i);
+                // 当前需要的页不淘汰，此时允许暂时超出maxPages
+                if (cur.index >= wantedFrom && cur.index <= wantedTo) {
+                    continue;
+                }
+                if (eldest == -1 || cur.lastUsed < pages.get(eldest).lastUsed) {
+                    eldest = i;
+                }
+            }
+            if (eldest == -1) {
+                break;
+            }
+            if (pages.get(eldest) == lastFound) {
+                lastFound = null;
+            }
+            pages.remove(eldest);
+        }
+    }
+
+    private static class Page {
+        int index;
+        float[][] values;
+        String[] labels;
+        long lastUsed;
+    }
+}
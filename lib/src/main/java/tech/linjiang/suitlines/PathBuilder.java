@@ -0,0 +1,266 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import android.graphics.Path;
+
+/**
+ * 将一条line在[startIndex, endIndex]之间的点连接为path，值为NaN的点（数据源中还未加载）会使line断开。<br>
+ * 只依赖自身的配置和参数，不访问View，所以既可以在onDraw中使用，也可以在后台线程中预先生成path；
+ * 每个线程需要使用自己的实例。
+ */
+class PathBuilder {
+
+    private final M4Sampler m4Sampler = new M4Sampler();
+    private int lineType = SuitLines.CURVE;
+    /**
+     * fill形态且不绘制边缘线时，直接闭合路径
+     */
+    private boolean needClose;
+    /**
+     * 每个像素列中有多个点时，是否先按M4聚合
+     */
+    private boolean needDownSampling;
+    /**
+     * 是否以{@link #buildLines}生成线段代替path
+     */
+    private boolean asLines;
+
+    void set(int lineType, boolean needClose, boolean needDownSampling, boolean asLines) {
+        this.lineType = lineType;
+        this.needClose = needClose;
+        this.needDownSampling = needDownSampling;
+        this.asLines = asLines;
+    }
+
+    boolean isAsLines() {
+        return asLines;
+    }
+
+    /**
+     * 配置相同时，生成的path也相同
+     * @param other
+     * @return
+     */
+    boolean isSameAs(PathBuilder other) {
+        return isSameAs(other.lineType, other.needClose, other.needDownSampling, other.asLines);
+    }
+
+    boolean isSameAs(int lineType, boolean needClose, boolean needDownSampling, boolean asLines) {
+        return this.lineType == lineType && this.needClose == needClose
+                && this.needDownSampling == needDownSampling && this.asLines == asLines;
+    }
+
+    /**
+     * @param path          会被重置
+     * @param line
+     * @param startIndex
+     * @param endIndex
+     * @param projection
+     * @param zeroAxisValue y为0时的坐标，用于计算动画中的y
+     * @param bottom        闭合路径时的底边，即linesArea.bottom
+     * @param offset        当前的滚动偏移，仅用于M4对齐像素列
+     * @param withPercents  是否有点在动画中，否则直接使用y坐标，不计算动画进度
+     */
+    void build(Path path, Series line, int startIndex, int endIndex, Projection projection,
+               float zeroAxisValue, float bottom, float offset, boolean withPercents) {
+        path.reset();
+        if (needDownSampling && projection.getBetween() < 1) {
+            buildDownSampled(path, line, startIndex, endIndex, projection, zeroAxisValue, bottom, offset,
+                    withPercents);
+            return;
+        }
+        float[] values = line.values, ys = line.ys, percents = line.percents, slopes = line.slopes;
+        boolean isMonotone = lineType == SuitLines.MONOTONE && slopes != null;
+        // 点的间距相同，控制点的x只与当前点差一个常量
+        float halfOfBetween = projection.getBetween() / 2;
+        float thirdOfBetween = projection.getBetween() / 3;
+        float previousX = 0, previousY = 0, previousSlope = 0;
+        // 当前这一段的起点，-1表示需要moveTo
+        int first = -1;
+        for (int i = startIndex; i <= endIndex; i++) {
+            int slot = line.slot(i);
+            if (Float.isNaN(values[slot])) {
+                if (needClose && first != -1 && i - 1 > first) {
+                    close(path, projection.x(first), previousX, bottom);
+                }
+                first = -1;
+                continue;
+            }
+            float curX = projection.x(i);
+            float curY = ys[slot];
+            float curSlope = isMonotone ? slopes[slot] : 0;
+            if (withPercents) {
+                // 动画中y与斜率都按进度从y为0处展开
+                float percent = percents[slot];
+                curY = zeroAxisValue - (zeroAxisValue - curY) * percent;
+                curSlope *= percent;
+            }
+            if (first == -1) {
+                path.moveTo(curX, curY);
+                first = i;
+                previousX = curX;
+                previousY = curY;
+                previousSlope = curSlope;
+                continue;
+            }
+            if (lineType == SuitLines.SEGMENT) {
+                path.lineTo(curX, curY);
+            } else if (isMonotone) {
+                // Hermite曲线转为贝塞尔曲线：控制点沿两端的切线各延伸1/3个间距
+                path.cubicTo(previousX + thirdOfBetween, previousY + previousSlope / 3,
+                        curX - thirdOfBetween, curY - curSlope / 3,
+                        curX, curY);
+            } else {
+                // 两个锚点的坐标x为中点的x，y分别是两个连接点的y
+                path.cubicTo(curX - halfOfBetween, previousY,
+                        curX - halfOfBetween, curY,
+                        curX, curY);
+            }
+            if (needClose && i == endIndex) {
+                close(path, projection.x(first), curX, bottom);
+            }
+            previousX = curX;
+            previousY = curY;
+            previousSlope = curSlope;
+        }
+    }
+
+    /**
+     * 将line在[startIndex, endIndex]之间的点写为首尾相接的线段，用于canvas.drawLines一次绘制，
+     * 不需要像path一样在每次重新连接后重新生成轮廓；只适用于不填充、实线的SEGMENT形态。<br>
+     * 参数与{@link #build}相同，NaN同样使line断开
+     * @param out   会被覆盖
+     */
+    void buildLines(Segments out, Series line, int startIndex, int endIndex, Projection projection,
+                    float zeroAxisValue, float offset, boolean withPercents) {
+        int n = 0;
+        if (needDownSampling && projection.getBetween() < 1) {
+            int count = downSample(line, startIndex, endIndex, projection, zeroAxisValue, offset, withPercents);
+            float[] vertexes = m4Sampler.getVertexes();
+            int[] starts = m4Sampler.getSegmentStarts();
+            float[] points = out.ensure(Math.max(0, count - 1) * 4);
+            int nextSegment = 1;
+            for (int k = 1; k < count; k++) {
+                if (nextSegment < m4Sampler.getSegmentCount() && starts[nextSegment] == k) {
+                    // NaN使line断开，不与上一段相连
+                    nextSegment++;
+                    continue;
+                }
+                points[n++] = vertexes[k * 2 - 2];
+                points[n++] = vertexes[k * 2 - 1];
+                points[n++] = vertexes[k * 2];
+                points[n++] = vertexes[k * 2 + 1];
+            }
+            out.count = n;
+            return;
+        }
+        float[] values = line.values, ys = line.ys, percents = line.percents;
+        float[] points = out.ensure((endIndex - startIndex) * 4);
+        float previousX = 0, previousY = 0;
+        boolean hasPrevious = false;
+        for (int i = startIndex; i <= endIndex; i++) {
+            int slot = line.slot(i);
+            if (Float.isNaN(values[slot])) {
+                hasPrevious = false;
+                continue;
+            }
+            float curX = projection.x(i);
+            float curY = withPercents
+                    ? zeroAxisValue - (zeroAxisValue - ys[slot]) * percents[slot] : ys[slot];
+            if (hasPrevious) {
+                points[n++] = previousX;
+                points[n++] = previousY;
+                points[n++] = curX;
+                points[n++] = curY;
+            }
+            previousX = curX;
+            previousY = curY;
+            hasPrevious = true;
+        }
+        out.count = n;
+    }
+
+    /**
+     * 每个像素列中有多个点时，先按M4聚合再连接，
+     * 此时曲线与线段在像素上没有区别，统一以线段连接
+     */
+    private void buildDownSampled(Path path, Series line, int startIndex, int endIndex, Projection projection,
+                                  float zeroAxisValue, float bottom, float offset, boolean withPercents) {
+        int count = downSample(line, startIndex, endIndex, projection, zeroAxisValue, offset, withPercents);
+        if (count == 0) {
+            return;
+        }
+        float[] vertexes = m4Sampler.getVertexes();
+        int[] starts = m4Sampler.getSegmentStarts();
+        int segments = m4Sampler.getSegmentCount();
+        // 与逐点连接一样，每一段分别moveTo，fill形态时分别闭合
+        for (int s = 0; s < segments; s++) {
+            int from = starts[s];
+            int to = s + 1 < segments ? starts[s + 1] : count;
+            path.moveTo(vertexes[from * 2], vertexes[from * 2 + 1]);
+            for (int k = from + 1; k < to; k++) {
+                path.lineTo(vertexes[k * 2], vertexes[k * 2 + 1]);
+            }
+            if (needClose && to - from > 1) {
+                close(path, vertexes[from * 2], vertexes[to * 2 - 2], bottom);
+            }
+        }
+    }
+
+    /**
+     * line有多级聚合并且每列至少有一块时从中聚合，否则逐点聚合；
+     * 多级聚合中没有动画进度，动画中总是逐点聚合
+     * @return 顶点数，顶点在m4Sampler中
+     */
+    private int downSample(Series line, int startIndex, int endIndex, Projection projection,
+                           float zeroAxisValue, float offset, boolean withPercents) {
+        LodPyramid lod = line.lod;
+        int level = lod == null || withPercents ? 0 : lod.levelFor(projection.getBetween());
+        if (level > 0) {
+            return m4Sampler.sample(lod, level, startIndex, endIndex, projection, offset);
+        }
+        return m4Sampler.sample(line, startIndex, endIndex, projection, offset, zeroAxisValue);
+    }
+
+    /**
+     * fill形态时沿底边闭合当前这一段
+     */
+    private void close(Path path, float firstX, float lastX, float bottom) {
+        path.lineTo(lastX, bottom);
+        path.lineTo(firstX, bottom);
+        path.close();
+    }
+
+    /**
+     * {@link #buildLines}的输出，每条line一个，数组只在不够时扩大
+     */
+    static class Segments {
+        float[] points = new float[0];
+        /**
+         * 有效的float数，每4个为一条线段
+         */
+        int count;
+
+        private float[] ensure(int size) {
+            if (points.length < size) {
+                points = new float[size + (size >> 1)];
+            }
+            return points;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 二进制的数据文件，通过内存映射直接读取，不需要转化为Unit：
+ * <pre>
+ * header   magic("SUIT") version lineCount count labelsOffset(long) summaryOffset(long)，共32字节
+ * columns  每条line连续存放count个float
+ * labels   可选：字典大小、字典（每项为UTF-8长度+内容）、每个点在字典中的索引（-1表示没有）
+ * summary  footer：blockSize blockCount，每条line的最值，以及每blockSize个点的最值
+ * </pre>
+ * 所有数值都是小端序。summary由{@link #write}生成，打开时直接读取；
+ * 其它方式生成的文件没有summary时，打开时遍历一次数据在内存中生成，不会修改文件。<br>
+ * 可直接作为{@link SuitLines#setDataSource(SuitLines.DataSource)}的数据源，只有可见区域附近的点会被读取，
+ * 按可见区域调整y轴时通过summary查找最值。
+ */
+public class SeriesFile implements SuitLines.RangedDataSource, Closeable {
+
+    private static final int MAGIC = 0x54495553;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int OFFSET_OF_SUMMARY_OFFSET = 24;
+    /**
+     * 每多少个点记录一次最值
+     */
+    private static final int BLOCK_SIZE = 4096;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final RandomAccessFile file;
+    private final int lineCount;
+    private final int count;
+    /**
+     * 每条line映射后的数据
+     */
+    private final FloatBuffer[] columns;
+    private String[] dictionary;
+    private IntBuffer labelIndexes;
+    private int blockCount;
+    private float[] mins, maxs;
+    private float[][] minsOfBlock, maxsOfBlock;
+
+    private SeriesFile(RandomAccessFile file, int lineCount, int count) {
+        this.file = file;
+        this.lineCount = lineCount;
+        this.count = count;
+        this.columns = new FloatBuffer[lineCount];
+    }
+
+    /**
+     * 以只读方式打开并映射数据文件，没有summary时在内存中生成
+     * @param path
+     * @return
+     * @throws IOException 不是有效的数据文件
+     */
+    public static SeriesFile open(File path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("不是有效的数据文件：" + path);
+            }
+            SeriesFile seriesFile = new SeriesFile(file, header.getInt(), header.getInt());
+            long labelsOffset = header.getLong();
+            long summaryOffset = header.getLong();
+            long position = HEADER_SIZE;
+            long bytesOfColumn = (long) seriesFile.count * 4;
+            for (int j = 0; j < seriesFile.lineCount; j++) {
+                seriesFile.columns[j] = channel.map(FileChannel.MapMode.READ_ONLY, position, bytesOfColumn)
+                        .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+                position += bytesOfColumn;
+            }
+            if (labelsOffset > 0) {
+                seriesFile.readLabels(channel, labelsOffset);
+            }
+            if (summaryOffset > 0) {
+                seriesFile.readSummary(channel, summaryOffset);
+            } else {
+                seriesFile.buildSummary();
+            }
+            return seriesFile;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 将数据写为数据文件，包含summary
+     * @param path
+     * @param lines     每条line的值，长度必须相同
+     * @param labels    每个点的额外信息（x轴），可为null
+     * @throws IOException
+     */
+    public static void write(File path, float[][] lines, String[] labels) throws IOException {
+        int count = lines.length == 0 ? 0 : lines[0].length;
+        for (float[] line : lines) {
+            if (line.length != count) {
+                throw new IllegalArgumentException("每条line的点数必须相同");
+            }
+        }
+        if (labels != null && labels.length != count) {
+            throw new IllegalArgumentException("labels的数量应该和点数对应");
+        }
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            long position = HEADER_SIZE;
+            for (float[] line : lines) {
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < line.length; i++) {
+                    if (!buffer.hasRemaining()) {
+                        position = flush(channel, buffer, position);
+                    }
+                    buffer.putFloat(line[i]);
+                }
+                position = flush(channel, buffer, position);
+            }
+            long labelsOffset = 0;
+            if (labels != null) {
+                labelsOffset = position;
+                position = writeLabels(channel, position, labels);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(lines.length).putInt(count)
+                    .putLong(labelsOffset).putLong(0);
+            flush(channel, header, 0);
+        } finally {
+            file.close();
+        }
+        // 从映射的数据生成summary，与打开没有summary的文件时是同一个流程，再追加到文件末尾
+        SeriesFile seriesFile = open(path);
+        file = new RandomAccessFile(path, "rw");
+        try {
+            seriesFile.writeSummary(file.getChannel());
+        } finally {
+            file.close();
+            seriesFile.close();
+        }
+    }
+
+    @Override
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * 直接从映射的内存中读取，可在任意线程调用
+     */
+    @Override
+    public float getValue(int line, int index) {
+        return columns[line].get(index);
+    }
+
+    @Override
+    public String getLabel(int index) {
+        if (labelIndexes == null) {
+            return null;
+        }
+        int i = labelIndexes.get(index);
+        return i < 0 ? null : dictionary[i];
+    }
+
+    public float getMin(int line) {
+        return mins[line];
+    }
+
+    public float getMax(int line) {
+        return maxs[line];
+    }
+
+    /**
+     * 通过summary查找[from, to)之间的最值，只有两端不完整的block需要读取数据，可在任意线程调用
+     * @param line
+     * @param from
+     * @param to
+     * @param minAndMax 0为最小值，1为最大值，结果与已有的值合并
+     */
+    @Override
+    public void findMinAndMax(int line, int from, int to, float[] minAndMax) {
+        int firstBlock = (from + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int lastBlock = to / BLOCK_SIZE;
+        if (firstBlock >= lastBlock) {
+            scan(line, from, to, minAndMax);
+            return;
+        }
+        scan(line, from, firstBlock * BLOCK_SIZE, minAndMax);
+        for (int b = firstBlock; b < lastBlock; b++) {
+            minAndMax[0] = Math.min(minAndMax[0], minsOfBlock[line][b]);
+            minAndMax[1] = Math.max(minAndMax[1], maxsOfBlock[line][b]);
+        }
+        scan(line, lastBlock * BLOCK_SIZE, to, minAndMax);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * NaN不参与比较
+     */
+    private void scan(int line, int from, int to, float[] minAndMax) {
+        FloatBuffer column = columns[line];
+        float min = minAndMax[0], max = minAndMax[1];
+        for (int i = from; i < to; i++) {
+            float value = column.get(i);
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+        minAndMax[0] = min;
+        minAndMax[1] = max;
+    }
+
+    private void buildSummary() {
+        blockCount = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        mins = new float[lineCount];
+        maxs = new float[lineCount];
+        minsOfBlock = new float[lineCount][blockCount];
+        maxsOfBlock = new float[lineCount][blockCount];
+        float[] minAndMax = new float[2];
+        for (int j = 0; j < lineCount; j++) {
+            mins[j] = Float.POSITIVE_INFINITY;
+            maxs[j] = Float.NEGATIVE_INFINITY;
+            for (int b = 0; b < blockCount; b++) {
+                minAndMax[0] = Float.POSITIVE_INFINITY;
+                minAndMax[1] = Float.NEGATIVE_INFINITY;
+                scan(j, b * BLOCK_SIZE, Math.min(count, (b + 1) * BLOCK_SIZE), minAndMax);
+                minsOfBlock[j][b] = minAndMax[0];
+                maxsOfBlock[j][b] = minAndMax[1];
+                mins[j] = Math.min(mins[j], minAndMax[0]);
+                maxs[j] = Math.max(maxs[j], minAndMax[1]);
+            }
+        }
+    }
+
+    /**
+     * 将summary追加到文件末尾，并在header中记录位置
+     */
+    private void writeSummary(FileChannel channel) throws IOException {
+        long summaryOffset = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(8 + lineCount * 8 * (1 + blockCount))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(BLOCK_SIZE).putInt(blockCount);
+        for (int j = 0; j < lineCount; j++) {
+            buffer.putFloat(mins[j]).putFloat(maxs[j]);
+            for (int b = 0; b < blockCount; b++) {
+                buffer.putFloat(minsOfBlock[j][b]).putFloat(maxsOfBlock[j][b]);
+            }
+        }
+        flush(channel, buffer, summaryOffset);
+        ByteBuffer offset = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        offset.putLong(summaryOffset);
+        flush(channel, offset, OFFSET_OF_SUMMARY_OFFSET);
+        channel.force(false);
+    }
+
+    private void readSummary(FileChannel channel, long position) throws IOException {
+        ByteBuffer head = read(channel, position, 8);
+        if (head.getInt() != BLOCK_SIZE) {
+            // 旧的block大小，重新生成
+            buildSummary();
+            return;
+        }
+        blockCount = head.getInt();
+        ByteBuffer buffer = read(channel, position + 8, lineCount * 8 * (1 + blockCount));
+        mins = new float[lineCount];
+        maxs = new float[lineCount];
+        minsOfBlock = new float[lineCount][blockCount];
+        maxsOfBlock = new float[lineCount][blockCount];
+        for (int j = 0; j < lineCount; j++) {
+            mins[j] = buffer.getFloat();
+            maxs[j] = buffer.getFloat();
+            for (int b = 0; b < blockCount; b++) {
+                minsOfBlock[j][b] = buffer.getFloat();
+                maxsOfBlock[j][b] = buffer.getFloat();
+            }
+        }
+    }
+
+    private static long writeLabels(FileChannel channel, long position, String[] labels) throws IOException {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<byte[]> dictionary = new ArrayList<>();
+        int bytesOfDictionary = 0;
+        for (String label : labels) {
+            if (label != null && !indexes.containsKey(label)) {
+                indexes.put(label, dictionary.size());
+                byte[] bytes = label.getBytes(UTF_8);
+                dictionary.add(bytes);
+                bytesOfDictionary += 4 + bytes.length;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4 + bytesOfDictionary).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(dictionary.size());
+        for (byte[] bytes : dictionary) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        position = flush(channel, buffer, position);
+        buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        for (String label : labels) {
+            if (!buffer.hasRemaining()) {
+                position = flush(channel, buffer, position);
+            }
+            buffer.putInt(label == null ? -1 : indexes.get(label));
+        }
+        return flush(channel, buffer, position);
+    }
+
+    private void readLabels(FileChannel channel, long position) throws IOException {
+        int size = read(channel, position, 4).getInt();
+        position += 4;
+        dictionary = new String[size];
+        for (int i = 0; i < size; i++) {
+            int length = read(channel, position, 4).getInt();
+            dictionary[i] = new String(read(channel, position + 4, length).array(), UTF_8);
+            position += 4 + length;
+        }
+        labelIndexes = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) count * 4)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("数据文件不完整");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 将buffer中已写入的内容写到position处
+     * @return 写入后的位置
+     */
+    private static long flush(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        return position;
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次填充数据的计算结果：y轴区间、各区域的大小、所有点的坐标以及初始可见区域的path。<br>
+ * 在主线程中以当时的布局和配置创建，在后台线程中由{@link #prepare()}计算，
+ * 完成后交给主线程一次性替换SuitLines中的状态，之后后台不再访问；
+ * 新的填充到来时，未完成的计算会被{@link #cancel()}。<br>
+ * 静态方法只依赖参数，SuitLines在主线程中重新布局时也使用它们，与View无关的部分见{@link Viewport}。
+ */
+class Snapshot {
+
+    /**
+     * 每计算这么多个点检查一次是否已被取消
+     */
+    private static final int CANCEL_CHECK_INTERVAL = 1 << 14;
+
+    final List<Series> lines;
+    final List<Paint> paints;
+    final boolean needAnim;
+    final boolean fitVisibleY;
+    /**
+     * 创建时的可用区域，与发布时不同说明布局已经变化
+     */
+    final RectF validArea;
+    /**
+     * xyPaint的拷贝，只在计算中使用
+     */
+    private final Paint textPaint;
+    private final int basePadding;
+    private final int maxOfVisible;
+    private final float strokePadding;
+    /**
+     * 是否需要每个点的切线斜率，即lineType为MONOTONE
+     */
+    private final boolean needSlopes;
+    /**
+     * 是否建立多级聚合，即开启了down-sampling
+     */
+    private final boolean needLod;
+    /**
+     * 为null时不预先生成path
+     */
+    final PathBuilder pathBuilder;
+
+    int dataSize;
+    final float[] actualMinAndMax = new float[2];
+    final float[] minAndMaxOfY = new float[2];
+    RectF yArea, xArea, linesArea, hintArea;
+    final Projection projection = new Projection();
+    float realBetween;
+    float zeroAxisValue;
+    float maxOffset;
+    /**
+     * 预先生成的path以及对应的边缘点，offset为0
+     */
+    int[] suitEdge;
+    List<Path> paths;
+
+    /**
+     * 是否输出Trace区间，在提交到后台之前设置
+     */
+    boolean isTraced;
+    /**
+     * prepare的耗时
+     */
+    private long prepareNanos;
+
+    private volatile boolean isCancelled;
+    private volatile boolean isPrepared;
+    /**
+     * 计算过程中的异常，发布时在主线程中抛出
+     */
+    private volatile RuntimeException failure;
+
+    Snapshot(List<Series> lines, List<Paint> paints, boolean needAnim, boolean fitVisibleY,
+             RectF validArea, Paint xyPaint, int basePadding, int maxOfVisible, boolean needSlopes,
+             boolean needLod, PathBuilder pathBuilder) {
+        this.lines = lines;
+        this.paints = paints;
+        this.needAnim = needAnim;
+        this.fitVisibleY = fitVisibleY;
+        this.validArea = validArea;
+        this.textPaint = new Paint(xyPaint);
+        this.basePadding = basePadding;
+        this.maxOfVisible = maxOfVisible;
+        this.strokePadding = paints.get(0).getStrokeWidth() / 2;
+        this.needSlopes = needSlopes;
+        this.needLod = needLod;
+        this.pathBuilder = pathBuilder;
+    }
+
+    /**
+     * 在后台线程中计算，被取消时尽早返回
+     * @return 是否完成且未被取消
+     */
+    boolean prepare() {
+        if (isTraced) {
+            Util.beginTrace("SuitLines.prepare");
+        }
+        long start = System.nanoTime();
+        try {
+            return prepareInternal();
+        } finally {
+            prepareNanos = System.nanoTime() - start;
+            if (isTraced) {
+                Util.endTrace();
+            }
+        }
+    }
+
+    long getPrepareNanos() {
+        return prepareNanos;
+    }
+
+    private boolean prepareInternal() {
+        for (int j = 0; j < lines.size() && !isCancelled; j++) {
+            if (fitVisibleY) {
+                lines.get(j).buildMinMaxTree();
+            }
+            if (needSlopes) {
+                // 之后计算坐标时同时得到斜率
+                lines.get(j).buildSlopes();
+            }
+            if (needLod) {
+                lines.get(j).buildLod();
+            }
+        }
+        dataSize = Viewport.calcDataSize(lines);
+        Viewport.calcRangeOfY(lines, actualMinAndMax, minAndMaxOfY);
+        if (isCancelled) {
+            return false;
+        }
+        RectF[] areas = calcAreas(textPaint, minAndMaxOfY, validArea, basePadding);
+        yArea = areas[0];
+        xArea = areas[1];
+        linesArea = areas[2];
+        hintArea = areas[3];
+        realBetween = Viewport.calcRealBetween(dataSize, maxOfVisible, linesArea.width());
+        zeroAxisValue = setProjectionOfY(projection, linesArea, realBetween, minAndMaxOfY, strokePadding);
+        if (!fitVisibleY) {
+            // fitVisibleY时只在绘制时计算可见区域中的点
+            for (int j = 0; j < lines.size(); j++) {
+                Series line = lines.get(j);
+                for (int from = 0; from < line.size(); from += CANCEL_CHECK_INTERVAL) {
+                    if (isCancelled) {
+                        return false;
+                    }
+                    projection.apply(line, from, Math.min(line.size(), from + CANCEL_CHECK_INTERVAL));
+                }
+            }
+        }
+        maxOffset = Viewport.calcMaxOffset(projection, dataSize, linesArea.left, linesArea.width());
+        if (pathBuilder != null && dataSize > 0) {
+            suitEdge = new int[]{0, Math.min(dataSize - 1, maxOfVisible - 1)};
+            paths = new ArrayList<>(lines.size());
+            for (int j = 0; j < lines.size() && !isCancelled; j++) {
+                Path path = new Path();
+                pathBuilder.build(path, lines.get(j), suitEdge[0], suitEdge[1],
+                        projection, zeroAxisValue, linesArea.bottom, 0, false);
+                paths.add(path);
+            }
+        }
+        isPrepared = !isCancelled;
+        return isPrepared;
+    }
+
+    void cancel() {
+        isCancelled = true;
+    }
+
+    /**
+     * 计算失败时也视为已完成，由主线程抛出异常
+     * @param e
+     */
+    void fail(RuntimeException e) {
+        failure = e;
+        isPrepared = true;
+    }
+
+    boolean isPrepared() {
+        return isPrepared;
+    }
+
+    RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * 计算期间影响结果的布局或配置已经变化，需要在主线程中重新计算
+     * @param validArea
+     * @param xyPaint
+     * @param fitVisibleY
+     * @return
+     */
+    boolean isStale(RectF validArea, Paint xyPaint, boolean fitVisibleY) {
+        return !this.validArea.equals(validArea)
+                || textPaint.getTextSize() != xyPaint.getTextSize()
+                || this.fitVisibleY != fitVisibleY;
+    }
+
+    /**
+     * 计算三个区域以及提示区域的大小
+     * @param textPaint     xy轴的画笔，用于测量文字
+     * @param minAndMaxOfY
+     * @param validArea     去掉padding后的区域
+     * @param basePadding
+     * @return 依次为yArea、xArea、linesArea、hintArea
+     */
+    static RectF[] calcAreas(Paint textPaint, float[] minAndMaxOfY, RectF validArea, int basePadding) {
+        float maxWidth = widthOfYLabels(textPaint, minAndMaxOfY);
+        RectF yArea = new RectF(validArea.left, validArea.top,
+                validArea.left + maxWidth + basePadding,
+                validArea.bottom - Util.getTextHeight(textPaint) - basePadding * 2);
+        RectF xArea = new RectF(yArea.right, yArea.bottom, validArea.right, validArea.bottom);
+        RectF linesArea = new RectF(yArea.right+1, yArea.top, xArea.right, yArea.bottom);
+        RectF hintArea = new RectF(linesArea.right-linesArea.right/4,linesArea.top,
+                linesArea.right,linesArea.top + linesArea.height()/4);
+        return new RectF[]{yArea, xArea, linesArea, hintArea};
+    }
+
+    /**
+     * y轴区间中最宽的刻度文字的宽度，至少为两位数的宽度
+     */
+    static float widthOfYLabels(Paint textPaint, float[] minAndMaxOfY) {
+        float textWidth = Math.max(textPaint.measureText(String.valueOf(minAndMaxOfY[0])),
+                textPaint.measureText(String.valueOf(minAndMaxOfY[1])));
+        return Math.max(textPaint.measureText("00"), textWidth);
+    }
+
+    /**
+     * 根据y轴区间更新映射系数
+     * @param padding   stroke宽度的一半，防止line的stroke部分在lineArea外被clip
+     * @return y为0时的坐标
+     */
+    static float setProjectionOfY(Projection projection, RectF linesArea, float realBetween,
+                                  float[] minAndMaxOfY, float padding) {
+        projection.set(linesArea.left, realBetween, linesArea.top, linesArea.height(),
+                minAndMaxOfY[0], minAndMaxOfY[1], padding);
+        return linesArea.top + linesArea.height() * minAndMaxOfY[1] / (minAndMaxOfY[1] - minAndMaxOfY[0]);
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 用于列表项的迷你折线图：与SuitLines使用相同的数据存储、坐标映射和连接方式，
+ * 但没有坐标轴、滚动、边缘效果、点击提示和动画，所有点放满整个宽度，每条line只绘制一个path。<br>
+ * 只在创建时分配对象，之后的{@link #setValues}只拷贝数据并复用已有的数组和path，
+ * 坐标在下一次绘制时才计算，所以可以在onBindViewHolder中频繁调用。<br>
+ * 只能在主线程中使用。
+ */
+public class SparkLines extends View {
+
+    private static final int DEFAULT_COLOR = Color.RED;
+
+    private final List<Series> datas = new ArrayList<>();
+    private final List<Path> paths = new ArrayList<>();
+    private final List<Paint> paints = new ArrayList<>();
+    private final Projection projection = new Projection();
+    private final PathBuilder pathBuilder = new PathBuilder();
+    private final float[] minAndMax = new float[2];
+    /**
+     * 当前的line数，datas中多出的部分留给之后复用
+     */
+    private int lineCount;
+    private int lineType;
+    private float lineSize = 4;
+    private int[] lineColors = {DEFAULT_COLOR};
+    /**
+     * 数据或大小变化后，在下一次绘制前重新计算坐标并连接path
+     */
+    private boolean isDirty;
+
+    public SparkLines(Context context) {
+        this(context, null);
+    }
+
+    public SparkLines(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public SparkLines(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        TypedArray ta = context.obtainStyledAttributes(attrs, R.styleable.suitlines);
+        lineType = ta.getInt(R.styleable.suitlines_lineType, SuitLines.CURVE);
+        ta.recycle();
+    }
+
+    /**
+     * 只有一条line
+     * @param values    会被拷贝，之后可以修改或复用；NaN使line断开
+     */
+    public void setValues(float[] values) {
+        setValues(values, values.length);
+    }
+
+    /**
+     * 只有一条line，只使用前count个值，便于复用同一个数组
+     * @param values
+     * @param count
+     */
+    public void setValues(float[] values, int count) {
+        if (count < 0 || count > values.length) {
+            throw new IllegalArgumentException("无效参数count");
+        }
+        lineCount = 1;
+        fill(obtainLine(0), values, count);
+        markDirty();
+    }
+
+    /**
+     * 多条line，每条line的点数可以不同，但x方向按点数最多的一条放满宽度
+     * @param lines 会被拷贝
+     */
+    public void setValues(float[][] lines) {
+        lineCount = lines.length;
+        for (int j = 0; j < lineCount; j++) {
+            fill(obtainLine(j), lines[j], lines[j].length);
+        }
+        markDirty();
+    }
+
+    /**
+     * 清空图表，已有的数组留给之后复用
+     */
+    public void clear() {
+        lineCount = 0;
+        markDirty();
+    }
+
+    /**
+     * @param lineType  {@link SuitLines#CURVE}、{@link SuitLines#SEGMENT}或{@link SuitLines#MONOTONE}
+     */
+    public void setLineType(int lineType) {
+        if (lineType != SuitLines.CURVE && lineType != SuitLines.SEGMENT && lineType != SuitLines.MONOTONE) {
+            throw new IllegalArgumentException("无效参数lineType");
+        }
+        this.lineType = lineType;
+        markDirty();
+    }
+
+    /**
+     * @param lineSize  线的宽度，默认为4
+     */
+    public void setLineSize(float lineSize) {
+        this.lineSize = lineSize;
+        for (int j = 0; j < paints.size(); j++) {
+            paints.get(j).setStrokeWidth(lineSize);
+        }
+        // 上下需要留出stroke的一半
+        markDirty();
+    }
+
+    /**
+     * 每条line的颜色，line比颜色多时循环使用
+     * @param colors    不能为空
+     */
+    public void setLineColors(int... colors) {
+        if (colors == null || colors.length == 0) {
+            throw new IllegalArgumentException("无效参数colors");
+        }
+        lineColors = colors;
+        for (int j = 0; j < paints.size(); j++) {
+            paints.get(j).setColor(colors[j % colors.length]);
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        isDirty = true;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (isDirty) {
+            isDirty = false;
+            buildPaths();
+        }
+        for (int j = 0; j < lineCount; j++) {
+            canvas.drawPath(paths.get(j), paints.get(j));
+        }
+    }
+
+    private void markDirty() {
+        isDirty = true;
+        invalidate();
+    }
+
+    /**
+     * 第j条line，不够时才创建
+     */
+    private Series obtainLine(int j) {
+        while (datas.size() <= j) {
+            datas.add(new Series(0));
+            paths.add(new Path());
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setStyle(Paint.Style.STROKE);
+            paint.setStrokeWidth(lineSize);
+            paint.setColor(lineColors[(datas.size() - 1) % lineColors.length]);
+            paints.add(paint);
+        }
+        return datas.get(j);
+    }
+
+    /**
+     * 拷贝前count个值，容量足够时不重新分配
+     */
+    private static void fill(Series line, float[] values, int count) {
+        line.resetWindow(0, count);
+        for (int i = 0; i < count; i++) {
+            line.set(i, values[i], null);
+        }
+    }
+
+    /**
+     * 按所有line的最值映射y，所有点放满宽度后连接为path；
+     * 每个像素列中有多个点时先按M4聚合
+     */
+    private void buildPaths() {
+        float left = getPaddingLeft(), top = getPaddingTop();
+        float width = getWidth() - left - getPaddingRight();
+        float height = getHeight() - top - getPaddingBottom();
+        int maxSize = 0;
+        minAndMax[0] = Float.POSITIVE_INFINITY;
+        minAndMax[1] = Float.NEGATIVE_INFINITY;
+        for (int j = 0; j < lineCount; j++) {
+            Series line = datas.get(j);
+            maxSize = Math.max(maxSize, line.size());
+            line.findMinAndMax(minAndMax);
+        }
+        if (maxSize == 0 || width <= 0 || height <= 0 || minAndMax[0] > minAndMax[1]) {
+            // 没有数据或都是NaN
+            for (int j = 0; j < lineCount; j++) {
+                paths.get(j).reset();
+            }
+            return;
+        }
+        if (minAndMax[0] == minAndMax[1]) {
+            // 所有值相同时位于中间
+            minAndMax[0] -= 1;
+            minAndMax[1] += 1;
+        }
+        float between = Viewport.calcRealBetween(maxSize, maxSize, width);
+        projection.set(left, between, top, height, minAndMax[0], minAndMax[1], lineSize / 2);
+        pathBuilder.set(lineType, false, true, false);
+        float bottom = top + height;
+        for (int j = 0; j < lineCount; j++) {
+            Series line = datas.get(j);
+            if (line.size() == 0) {
+                paths.get(j).reset();
+                continue;
+            }
+            if (lineType == SuitLines.MONOTONE) {
+                line.buildSlopes();
+            } else {
+                line.releaseSlopes();
+            }
+            projection.apply(line, 0, line.size());
+            pathBuilder.build(paths.get(j), line, 0, line.size() - 1, projection, bottom, bottom, 0, false);
+        }
+    }
+}
@@ -16,10 +16,7 @@
 
 package tech.linjiang.suitlines;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
 import android.animation.TimeInterpolator;
-import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
@@ -29,32 +26,31 @@ import android.graphics.DashPathEffect;
 import android.graphics.LinearGradient;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.graphics.PointF;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Shader;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
-import android.view.animation.LinearInterpolator;
+import android.view.animation.AnimationUtils;
 import android.view.animation.OvershootInterpolator;
 import android.widget.EdgeEffect;
 import android.widget.Scroller;
 
-import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * https://github.com/whataa
@@ -78,6 +74,7 @@ public class SuitLines extends View {
         basePadding = Util.dip2px(basePadding);
         maxVelocity = ViewConfiguration.get(context).getScaledMaximumFlingVelocity();
         clickSlop = ViewConfiguration.get(context).getScaledEdgeSlop();
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
         scroller = new Scroller(context);
         edgeEffectLeft = new EdgeEffect(context);
         edgeEffectRight = new EdgeEffect(context);
@@ -116,8 +113,6 @@ public class SuitLines extends View {
 
     // 创建自己的Handler，与ViewRootImpl的Handler隔离，方便detach时remove。
     private Handler handler = new Handler(Looper.getMainLooper());
-    // 遍历线上点的动画插值器
-    private TimeInterpolator linearInterpolator = new LinearInterpolator();
     // 每个数据点的动画插值
     private TimeInterpolator pointInterpolator = new OvershootInterpolator(3);
     private RectF linesArea, xArea, yArea, hintArea;
@@ -148,6 +143,10 @@ public class SuitLines extends View {
      */
     private List<Paint> paints = new ArrayList<>();
     private List<Path> paths = new ArrayList<>();
+    /**
+     * 以线段代替path绘制时，每条line的线段
+     */
+    private List<PathBuilder.Segments> segments = new ArrayList<>();
     private Path tmpPath = new Path();
     /**
      * fill形态下时，边缘线画笔
@@ -156,31 +155,76 @@ public class SuitLines extends View {
     /**
      * 约定：如果需要实现多组数据，那么每组数据的长度必须相同！
      * 多组数据的数据池；
-     * Key：一组数据的唯一标识,注意：要求连续且从0开始
-     * value：一组数据
+     * 索引：一组数据的唯一标识，从0开始
+     * value：一组数据，以数组形式存储
+     */
+    private List<Series> datas = new ArrayList<>();
+    /**
+     * 每组数据的点数，追加数据的过程中各组可能暂时不同，取最小值
      */
-    private Map<Integer, List<Unit>> datas = new HashMap<>();
+    private int dataSize;
 
     /**
-     * 所有数据集的动画
+     * 追加数据时每组数据最多保留的点数，<=0表示不限制
+     */
+    private int maxOfRetainedPoints;
+    /**
+     * 追加数据时每个点最多保留的时间(ms)，<=0表示不限制
+     */
+    private long maxAgeOfPoints;
+    /**
+     * 追加数据时，若当前位于最右边，是否自动滚动以保持最新的点可见
      */
-    private List<ValueAnimator> animators = new ArrayList<>();
+    private boolean autoFollow;
     /**
-     * line的点击效果
+     * 待追加的数据，可在任意线程写入，在主线程中批量处理
      */
-    private ValueAnimator clickHintAnimator;
+    private final Object appendLock = new Object();
+    private int pendingCount;
+    private int[] pendingLines = new int[16];
+    private float[] pendingValues = new float[16];
+    private String[] pendingExtXs = new String[16];
+    private long[] pendingTimes = new long[16];
+    private boolean isAppendScheduled;
     /**
-     * 当前正在动画的那组数据
+     * 批量处理时与pending交换，避免持锁期间处理数据
      */
-    private int curAnimLine;
+    private int[] drainLines = new int[16];
+    private float[] drainValues = new float[16];
+    private String[] drainExtXs = new String[16];
+    private long[] drainTimes = new long[16];
     /**
-     * 整体动画的起始时间
+     * 本次批量处理中每条line新点的起始索引
+     */
+    private int[] appendFromOfLines = new int[0];
+    private final Runnable drainAppendsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drainAppends();
+        }
+    };
+
+    /**
+     * 点击提示的起始时间，提示在durationOfClickHint内逐渐变淡后消失
+     */
+    private long startTimeOfClickHint;
+    private long durationOfClickHint = 800;
+    /**
+     * 整体动画的起始时间，所有点的动画进度都由它推算，不再为每个点创建动画
      */
     private long startTimeOfAnim;
+    /**
+     * 参与整体动画的点的索引区间
+     */
+    private int startIndexOfAnim, endIndexOfAnim;
     /**
      * 是否正在整体动画中
      */
     private boolean isAniming;
+    /**
+     * 每个数据点的动画时间
+     */
+    private long durationOfPointAnim = 800;
     /**
      * 两个点之间的动画启动间隔，大于0时仅当总数据点<可见点数时有效
      */
@@ -203,18 +247,66 @@ public class SuitLines extends View {
     private int countOfY = 5;
 
     /**
-     * y轴的缓存，提高移动效率
+     * y轴的缓存，提高移动效率；ALPHA_8，绘制时通过yBufferPaint着色
      */
     private Bitmap yAreaBuffer;
+    private final Paint yBufferPaint = new Paint();
     /**
-     * y轴的辅助刻度线
+     * y轴的辅助刻度线的端点，每4个为一条线段，每帧直接绘制
      */
-    private Bitmap yGridBuffer;
+    private float[] yGridLines = new float[0];
+    private int yGridCount;
 
     /**
      * y轴的最小和大刻度值，保留一位小数
      */
     private float[] minAndMaxOfY = new float[2];
+    /**
+     * 按可见区域调整y轴区间时，y轴区域按该区间的刻度文字确定宽度：
+     * 已有数据时为所有数据的区间，滚动时lines区域不会随可见区间的刻度宽度变化；
+     * 无法得到所有数据的区间时（数据源不是RangedDataSource），只随已出现过的区间扩大
+     */
+    private final float[] labelRangeOfY = new float[2];
+    /**
+     * 所有数据的实际最值，查找时复用
+     */
+    private float[] tmpMinAndMax = new float[2];
+    /**
+     * 是否按可见区域中的点来调整y轴区间
+     */
+    private boolean fitVisibleY;
+    /**
+     * 可见区域中的实际最值，查找时复用
+     */
+    private float[] visibleMinAndMax = new float[2];
+    /**
+     * fitVisibleY时，按当前y轴区间已计算过坐标的点的索引区间，-1表示没有
+     */
+    private int fitProjectedFrom = -1, fitProjectedTo = -1;
+    /**
+     * 值到坐标的映射
+     */
+    private Projection projection = new Projection();
+
+    /**
+     * 按需提供数据的数据源，为null表示使用feed/append的数据
+     */
+    private DataSource dataSource;
+    private PageCache pageCache;
+    private int maxPagesOfSource;
+    /**
+     * 数据源模式下datas中每条line实际保存的区间[windowFrom, windowTo)，以及填充时页缓存的版本
+     */
+    private int windowFrom, windowTo;
+    private int windowVersion;
+    private final Runnable pageLoadedRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // 重新填充窗口
+            dirtyFlags |= DIRTY_PATHS;
+            invalidate();
+        }
+    };
 
     /**
      * 根据可见点数计算出的两点之间的距离
@@ -242,10 +334,58 @@ public class SuitLines extends View {
     private int maxVelocity;
     // 点击y的误差
     private int clickSlop;
+    private int touchSlop;
+    /**
+     * 按y查找某一列中最接近的line
+     */
+    private final HitIndex hitIndex = new HitIndex();
+    /**
+     * 不为null时，长按后进入拖动查找
+     */
+    private OnScrubListener onScrubListener;
+    /**
+     * 不为null时记录每帧的耗时和计数
+     */
+    private MetricsListener metricsListener;
+    private FrameMetrics frameMetrics;
+    private boolean isScrubbing;
+    /**
+     * 手指的最新位置，拖动查找时在下一帧中统一处理
+     */
+    private float scrubX, scrubY;
+    private boolean hasPendingScrub;
+    private final Runnable startScrubRunnable = new Runnable() {
+        @Override
+        public void run() {
+            startScrub();
+        }
+    };
     /**
      * 判断左/右方向，当在边缘就不触发fling，以优化性能
      */
     private float orientationX;
+    /**
+     * 上一帧之后手指累积的滑动距离，在下一帧的computeScroll中一次性应用
+     */
+    private float pendingScrollX;
+    /**
+     * 双指缩放，为null表示未开启
+     */
+    private ScaleGestureDetector scaleDetector;
+    /**
+     * 两点之间的距离相对于maxOfVisible决定的距离的倍数，1表示未缩放
+     */
+    private float zoom = 1;
+    /**
+     * 上一帧之后累积的缩放倍数及最新的缩放中心，在下一帧的computeScroll中一次性应用
+     */
+    private float pendingZoom = 1;
+    private float zoomFocusX;
+    private boolean isZooming;
+    /**
+     * 本次触摸中是否缩放过，松开时不再点击或fling
+     */
+    private boolean hasZoomed;
     private VelocityTracker velocityTracker;
     private Scroller scroller;
 
@@ -270,15 +410,116 @@ public class SuitLines extends View {
      * 实际的点击位置，0为x索引，1为某条line
      */
     private int[] clickIndexs;
+    /**
+     * clickIndexs实际使用的数组，避免每次点击都创建
+     */
+    private final int[] clickIndexsHolder = new int[2];
+    /**
+     * 点击时生成的提示文本，绘制时不再拼接；每次点击都复用，x为空时表示没有额外信息
+     */
+    private final StringBuilder hintTextOfX = new StringBuilder(), hintTextOfY = new StringBuilder();
+    /**
+     * 绘制/点击时复用的矩形
+     */
+    private final RectF tmpRect = new RectF();
+    private final Rect tmpBufferRect = new Rect();
+    /**
+     * fill形态下每条line边缘线的颜色，以及计算该颜色时的shader，shader不变时不再反射获取
+     */
+    private int[] coverLineColors = new int[0];
+    private Shader[] shadersOfCoverLineColors = new Shader[0];
     private float firstX, firstY;
     /**
-     * 控制是否强制重新生成path，当改变lineType/paint时需要
+     * 需要重新计算的阶段，每个阶段只在自身的输入变化时重新计算，并在onDraw开始时按顺序处理：<br>
+     * DIRTY_RANGE -> DIRTY_LAYOUT -> DIRTY_DATA -> DIRTY_PATHS，前一阶段的结果确实变化时才标记后一阶段；
+     * DIRTY_STYLE只影响已有path的绘制，DIRTY_Y_BUFFER在drawY中处理
      */
-    private boolean forceToDraw;
+    private int dirtyFlags;
+    /**
+     * 按所有数据重新计算y轴区间
+     */
+    private static final int DIRTY_RANGE = 1;
+    /**
+     * 重新计算各区域的大小
+     */
+    private static final int DIRTY_LAYOUT = 1 << 1;
+    /**
+     * 重新计算所有点的坐标
+     */
+    private static final int DIRTY_DATA = 1 << 2;
+    /**
+     * 重新连接path，同时重新绘制所有tile
+     */
+    private static final int DIRTY_PATHS = 1 << 3;
+    /**
+     * 画笔或line的样式变化，path的形状变化时才重新连接，否则只重新绘制
+     */
+    private static final int DIRTY_STYLE = 1 << 4;
+    /**
+     * 重新绘制y轴的缓存
+     */
+    private static final int DIRTY_Y_BUFFER = 1 << 5;
+    /**
+     * 最近一次测量得到的可用区域，相同的测量不做任何计算
+     */
+    private RectF measuredArea;
     /**
      * 是否显示y轴的辅助刻度线
      */
     private boolean showYGrid = false;
+    /**
+     * 可见区域中的点比像素列还多时，是否先按像素列聚合(M4)再连接
+     */
+    private boolean needDownSampling;
+    /**
+     * 开启后lines层按固定宽度的tile缓存为bitmap，为null表示未开启
+     */
+    private TileCache tileCache;
+    private final Canvas tileCanvas = new Canvas();
+    /**
+     * 重新绘制y轴缓存时使用，与tileCanvas一样每次绑定到目标bitmap
+     */
+    private final Canvas bufferCanvas = new Canvas();
+    private final DecimalFormat yLabelFormat = new DecimalFormat("##.#");
+    /**
+     * x轴及其刻度线的端点，每4个为一条线段
+     */
+    private float[] xAxisLines = new float[0];
+    /**
+     * 连接各点生成path，只在主线程中使用
+     */
+    private PathBuilder pathBuilder = new PathBuilder();
+    /**
+     * 正在后台准备的填充，新的填充到来时取消
+     */
+    private Snapshot preparingSnapshot;
+    private Future<?> preparingFuture;
+    private final Runnable publishSnapshotRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Snapshot snapshot = preparingSnapshot;
+            if (snapshot == null || !snapshot.isPrepared()) {
+                // 已被更新的填充取代
+                return;
+            }
+            preparingSnapshot = null;
+            preparingFuture = null;
+            if (snapshot.getFailure() != null) {
+                throw snapshot.getFailure();
+            }
+            MetricsListener listener = metricsListener;
+            if (listener == null) {
+                publish(snapshot);
+                return;
+            }
+            Util.beginTrace("SuitLines.publish");
+            long start = System.nanoTime();
+            publish(snapshot);
+            long publishNanos = System.nanoTime() - start;
+            Util.endTrace();
+            listener.onFeed(snapshot.getPrepareNanos(), publishNanos, dataSize);
+        }
+    };
 
     /**
      * lines在当前可见区域的边缘点
@@ -292,6 +533,10 @@ public class SuitLines extends View {
     // 曲线、线段
     public static final int CURVE = 0;
     public static final int SEGMENT = 1;
+    /**
+     * 单调曲线：曲线在相邻两点之间不会超出它们的范围，每个点的切线斜率在计算坐标时预先得到
+     */
+    public static final int MONOTONE = 2;
     private int lineType = CURVE;
     public static final int SOLID = 0;
     public static final int DASHED = 1;
@@ -300,11 +545,14 @@ public class SuitLines extends View {
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-        calcAreas();
-        basePaint.setShader(buildPaintColor(defaultLineColor));
-        if (!datas.isEmpty()) {
-            calcUnitXY();
+        RectF validArea = buildValidArea();
+        if (validArea.equals(measuredArea)) {
+            return;
         }
+        measuredArea = validArea;
+        // 区域立即更新，点的坐标在绘制前才重新计算
+        dirtyFlags |= DIRTY_LAYOUT;
+        resolveLayout();
     }
 
     @Override
@@ -313,10 +561,20 @@ public class SuitLines extends View {
             recycleVelocityTracker();
             return false;
         }
+        if (scaleDetector != null) {
+            scaleDetector.onTouchEvent(event);
+        }
         switch (event.getActionMasked()) {
             case MotionEvent.ACTION_DOWN:
                 firstX = lastX = event.getX();
                 firstY = event.getY();
+                pendingScrollX = 0;
+                hasZoomed = false;
+                scrubX = firstX;
+                scrubY = firstY;
+                if (onScrubListener != null) {
+                    handler.postDelayed(startScrubRunnable, ViewConfiguration.getLongPressTimeout());
+                }
                 scroller.abortAnimation();
                 initOrResetVelocityTracker();
                 velocityTracker.addMovement(event);
@@ -326,17 +584,30 @@ public class SuitLines extends View {
                 lastX = event.getX(0);
                 break;
             case MotionEvent.ACTION_MOVE:
-                orientationX = event.getX() - lastX;
-                onScroll(orientationX);
+                scrubX = event.getX();
+                scrubY = event.getY();
+                if (isScrubbing) {
+                    // 拖动查找时不滚动
+                    hasPendingScrub = true;
+                    invalidate();
+                    break;
+                }
+                if (isZooming) {
+                    // 缩放时不滚动，缩放中心处的点保持不动
+                    lastX = event.getX();
+                    velocityTracker.clear();
+                    break;
+                }
+                if (Math.abs(scrubX - firstX) > touchSlop || Math.abs(scrubY - firstY) > touchSlop) {
+                    handler.removeCallbacks(startScrubRunnable);
+                }
+                // 一帧内可能有多个MOVE，只累积距离，边界和边缘效果在下一帧统一处理；
+                // getX()是最新的采样，与lastX的差已包含了其中所有历史采样的位移
+                pendingScrollX += event.getX() - lastX;
                 lastX = event.getX();
+                // addMovement会同时加入event中的历史采样，使fling的速度更准确
                 velocityTracker.addMovement(event);
-                if (needEdgeEffect && datas.get(0).size() > maxOfVisible) {
-                    if (isArriveAtLeftEdge()) {
-                        edgeEffectLeft.onPull(Math.abs(orientationX) / linesArea.height());
-                    } else if (isArriveAtRightEdge()) {
-                        edgeEffectRight.onPull(Math.abs(orientationX) / linesArea.height());
-                    }
-                }
+                invalidate();
                 break;
             case MotionEvent.ACTION_POINTER_UP: // 计算出正确的追踪手指
                 int minID = event.getPointerId(0);
@@ -352,6 +623,20 @@ public class SuitLines extends View {
                 break;
             case MotionEvent.ACTION_CANCEL:
             case MotionEvent.ACTION_UP:
+                handler.removeCallbacks(startScrubRunnable);
+                if (isScrubbing) {
+                    endScrub();
+                    velocityTracker.clear();
+                    lastX = event.getX();
+                    break;
+                }
+                if (hasZoomed) {
+                    velocityTracker.clear();
+                    lastX = event.getX();
+                    break;
+                }
+                // 点击和fling都需要基于最新的offset判断
+                applyPendingScroll();
                 if (needShowHint && event.getAction() == MotionEvent.ACTION_UP) {
                     boolean canCallTap = Math.abs(event.getX() - firstX) < 2
                             && Math.abs(event.getY() - firstY) < 2;
@@ -381,6 +666,9 @@ public class SuitLines extends View {
 
     @Override
     public void computeScroll() {
+        applyPendingZoom();
+        applyPendingScroll();
+        applyPendingScrub();
         if (scroller.computeScrollOffset()) {
             onScroll(scroller.getCurrX() - lastX);
             lastX = scroller.getCurrX();
@@ -393,7 +681,7 @@ public class SuitLines extends View {
                     edgeEffectRight.onAbsorb((int) scroller.getCurrVelocity());
                 }
             }
-            postInvalidate();
+            Util.postInvalidateOnAnimation(this);
         } else {
             hasAbsorbLeft = false;
             hasAbsorbRight = false;
@@ -403,16 +691,33 @@ public class SuitLines extends View {
 
     @Override
     public void draw(Canvas canvas) {
+        FrameMetrics metrics = frameMetrics;
+        MetricsListener listener = metricsListener;
+        if (metrics != null) {
+            metrics.beginFrame();
+        }
         super.draw(canvas);
-        if (datas.isEmpty()) return;
-        if (!needEdgeEffect) return;
+        if (!datas.isEmpty() && needEdgeEffect) {
+            beginPhase(FrameMetrics.EDGE_EFFECTS);
+            drawEdgeEffects(canvas);
+            endPhase(FrameMetrics.EDGE_EFFECTS);
+        }
+        if (metrics != null) {
+            metrics.endFrame();
+            if (listener != null) {
+                listener.onFrame(metrics);
+            }
+        }
+    }
+
+    private void drawEdgeEffects(Canvas canvas) {
         if (!edgeEffectLeft.isFinished()) {
             canvas.save();
             canvas.rotate(-90);
             canvas.translate(-linesArea.bottom, linesArea.left);
             edgeEffectLeft.setSize((int) linesArea.height(), (int) linesArea.height());
             if (edgeEffectLeft.draw(canvas)) {
-                postInvalidate();
+                Util.postInvalidateOnAnimation(this);
             }
             canvas.restore();
         }
@@ -423,7 +728,7 @@ public class SuitLines extends View {
             canvas.translate(linesArea.top, -linesArea.right);
             edgeEffectRight.setSize((int) linesArea.height(), (int) linesArea.height());
             if (edgeEffectRight.draw(canvas)) {
-                postInvalidate();
+                Util.postInvalidateOnAnimation(this);
             }
             canvas.restore();
         }
@@ -433,14 +738,36 @@ public class SuitLines extends View {
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        beginPhase(FrameMetrics.RESOLVE);
+        resolveDirty();
+        endPhase(FrameMetrics.RESOLVE);
         if (datas.isEmpty()) return;
         // lines
         canvas.save();
         canvas.clipRect(linesArea.left, linesArea.top, linesArea.right, linesArea.bottom+xArea.height());
         canvas.translate(offset, 0);
+        boolean needBuildPaths = (dirtyFlags & DIRTY_PATHS) != 0;
+        if (tileCache != null && (dirtyFlags & (DIRTY_PATHS | DIRTY_STYLE)) != 0) {
+            tileCache.clear();
+        }
+        dirtyFlags &= ~(DIRTY_PATHS | DIRTY_STYLE);
+        if (canUseTiles()) {
+            suitEdge = findSuitEdgeInVisual2(suitEdge);
+            beginPhase(FrameMetrics.DRAW_TILES);
+            drawTiles(canvas);
+            endPhase(FrameMetrics.DRAW_TILES);
+            if (clickIndexs != null) {
+                drawClickHint(canvas);
+            }
         // 当滑动到边缘 或 上次与本次结果相同 或 不需要计算边缘点 的时候就不再计算，直接draw已有的path
-        if (!paths.isEmpty() && !forceToDraw && !isAniming && (lastOffset == offset || noNeedCalcEdge(offset))) {
+        } else if (!paths.isEmpty() && !needBuildPaths && !isAniming && (lastOffset == offset || noNeedCalcEdge(offset))) {
+            beginPhase(FrameMetrics.DRAW_PATHS);
             drawExsitDirectly(canvas);
+            endPhase(FrameMetrics.DRAW_PATHS);
+            if (frameMetrics != null) {
+                frameMetrics.markPathsReused();
+                frameMetrics.addPoints((suitEdge[1] - suitEdge[0] + 1) * datas.size());
+            }
             // hint
             if (clickIndexs != null) {
                 drawClickHint(canvas);
@@ -448,19 +775,56 @@ public class SuitLines extends View {
         } else {
             // 因为手指或fling计算出的offset不是连续按1px递增/减的，即无法准确地确定当前suitEdge和linesArea之间的相对位置
             // 所以不适合直接加减suitEdge来划定数据区间
-            suitEdge = findSuitEdgeInVisual2();
+            beginPhase(FrameMetrics.BUILD_PATHS);
+            suitEdge = findSuitEdgeInVisual2(suitEdge);
+            if (dataSource != null) {
+                fillWindow(suitEdge[0], suitEdge[1]);
+            }
+            if (needFitVisibleY()) {
+                fitVisibleRange(suitEdge[0], suitEdge[1]);
+            }
+            if (isAniming) {
+                if (frameMetrics != null) {
+                    frameMetrics.markAnimFrame();
+                }
+                if (updatePercentsOfAnim()) {
+                    // 所有点都已完成，这就是最后一帧，之后不再请求刷新
+                    isAniming = false;
+                } else {
+                    Util.postInvalidateOnAnimation(this);
+                }
+            }
+            endPhase(FrameMetrics.BUILD_PATHS);
             drawLines(canvas, suitEdge[0], suitEdge[1]);
         }
         // x 蓝色会稍增加
+        beginPhase(FrameMetrics.DRAW_X);
         drawX(canvas, suitEdge[0], suitEdge[1]);
+        endPhase(FrameMetrics.DRAW_X);
         if (lastOffset != offset) {
             clickIndexs = null;
         }
         lastOffset = offset;
-        forceToDraw = false;
         canvas.restore();
         // y
+        beginPhase(FrameMetrics.DRAW_Y);
         drawY(canvas);
+        endPhase(FrameMetrics.DRAW_Y);
+    }
+
+    /**
+     * 设置了MetricsListener时记录阶段的开始，否则什么都不做
+     */
+    private void beginPhase(int phase) {
+        if (frameMetrics != null) {
+            frameMetrics.begin(phase);
+        }
+    }
+
+    private void endPhase(int phase) {
+        if (frameMetrics != null) {
+            frameMetrics.end(phase);
+        }
     }
 
     /**
@@ -471,80 +835,151 @@ public class SuitLines extends View {
      */
     private boolean noNeedCalcEdge(float offset) {
         return suitEdge != null
-                && datas.get(0).get(suitEdge[0]).getXY().x <= linesArea.left - offset
-                && datas.get(0).get(suitEdge[1]).getXY().x >= linesArea.right - offset;
+                && projection.x(suitEdge[0]) <= linesArea.left - offset
+                && projection.x(suitEdge[1]) >= linesArea.right - offset;
     }
 
     /**
-     * 滑动方法，同时检测边缘条件
-     *
+     * 只更新offset，由调用者负责刷新
      * @param deltaX
      */
     private void onScroll(float deltaX) {
         offset += deltaX;
         offset = offset > 0 ? 0 : (Math.abs(offset) > maxOffset) ? -maxOffset : offset;
-        invalidate();
     }
 
+    /**
+     * 在帧的开始应用上一帧之后累积的滑动距离，使每帧的耗费与触摸的采样率无关
+     */
+    private void applyPendingScroll() {
+        if (pendingScrollX == 0) {
+            return;
+        }
+        orientationX = pendingScrollX;
+        pendingScrollX = 0;
+        onScroll(orientationX);
+        if (needEdgeEffect && dataSize > countOfVisible()) {
+            if (isArriveAtLeftEdge()) {
+                edgeEffectLeft.onPull(Math.abs(orientationX) / linesArea.height());
+            } else if (isArriveAtRightEdge()) {
+                edgeEffectRight.onPull(Math.abs(orientationX) / linesArea.height());
+            }
+        }
+    }
+
+
+    /**
+     * 在帧的开始应用上一帧之后累积的缩放，保持缩放中心处的点不动
+     */
+    private void applyPendingZoom() {
+        if (pendingZoom == 1) {
+            return;
+        }
+        float factor = pendingZoom;
+        pendingZoom = 1;
+        if (datas.isEmpty() || linesArea == null) {
+            return;
+        }
+        float lastBetween = realBetween;
+        zoom *= factor;
+        calcRealBetween();
+        if (realBetween == lastBetween) {
+            return;
+        }
+        float focus = zoomFocusX - linesArea.left;
+        offset = focus - (focus - offset) * realBetween / lastBetween;
+        projection.setBetween(realBetween);
+        calcMaxOffset();
+        onScroll(0);
+        clickIndexs = null;
+        dirtyFlags |= DIRTY_PATHS;
+    }
 
     private void onTap(float upX, float upY) {
         upX -= offset;
-        RectF bak = new RectF(linesArea);
+        RectF bak = tmpRect;
+        bak.set(linesArea);
         bak.offset(-offset,0);
         if (datas.isEmpty() || !bak.contains(upX, upY)) {
             return;
         }
-        float index = (upX - linesArea.left) / realBetween;
-        int realIndex = -1;
-        if ((index - (int) index) > 0.6f) {
-            realIndex = (int) index + 1;
-        } else if ((index - (int) index) < 0.4f) {
-            realIndex = (int) index;
-        }
-        if (realIndex != -1) {
-            int mostMatchY = -1;
-            for (int i = 0; i < datas.size(); i++) {
-                float cur = Math.abs(datas.get(i).get(realIndex).getXY().y - upY);
-                if (cur <= clickSlop) {
-                    if (mostMatchY != -1) {
-                        if (Math.abs(datas.get(mostMatchY).get(realIndex).getXY().y - upY) > cur) {
-                            mostMatchY = i;
-                        }
-                    } else {
-                        mostMatchY = i;
-                    }
-                }
-            }
+        int realIndex = Viewport.indexAt(upX, linesArea.left, realBetween);
+        if (realIndex != -1 && realIndex < dataSize) {
+            // 数据源中还未加载的点（NaN）被忽略
+            int mostMatchY = hitIndex.find(datas, realIndex, upY, clickSlop, projection);
             if (mostMatchY != -1) {
-                if (clickHintAnimator != null && clickHintAnimator.isRunning()) {
-                    clickHintAnimator.removeAllUpdateListeners();
-                    clickHintAnimator.cancel();
-                    hintPaint.setAlpha(100);
-                    clickIndexs = null;
-                    invalidate();
-                }
-                clickIndexs = new int[]{realIndex, mostMatchY};
-                clickHintAnimator = ValueAnimator.ofInt(100, 30);
-                clickHintAnimator.setDuration(800);
-                clickHintAnimator.setInterpolator(linearInterpolator);
-                clickHintAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                    @Override
-                    public void onAnimationUpdate(ValueAnimator animation) {
-                        int cur = (Integer) animation.getAnimatedValue();
-                        if (cur <= 30) {
-                            hintPaint.setAlpha(100);
-                            clickIndexs = null;
-                        } else {
-                            hintPaint.setAlpha(cur);
-                        }
-                        postInvalidate();
-                    }
-                });
-                clickHintAnimator.start();
+                showHint(realIndex, mostMatchY);
+                // 重新开始变淡，之后的每一帧都在drawClickHint中按时间计算
+                startTimeOfClickHint = AnimationUtils.currentAnimationTimeMillis();
+                invalidate();
             }
         }
     }
 
+    private void showHint(int index, int lineIndex) {
+        clickIndexs = clickIndexsHolder;
+        clickIndexs[0] = index;
+        clickIndexs[1] = lineIndex;
+        Series line = datas.get(lineIndex);
+        String extX = line.getExtX(index);
+        hintTextOfX.setLength(0);
+        if (!TextUtils.isEmpty(extX)) {
+            hintTextOfX.append("x : ").append(extX);
+        }
+        hintTextOfY.setLength(0);
+        hintTextOfY.append("y : ").append(line.getValue(index));
+    }
+
+    /**
+     * 长按后开始拖动查找，之前的少量移动不再滚动
+     */
+    private void startScrub() {
+        if (onScrubListener == null || datas.isEmpty() || isAniming) {
+            return;
+        }
+        isScrubbing = true;
+        pendingScrollX = 0;
+        hasPendingScrub = true;
+        if (getParent() != null) {
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+        invalidate();
+    }
+
+    /**
+     * 在帧的开始按手指的最新位置查找最接近的点，只有结果变化时才更新提示并回调
+     */
+    private void applyPendingScrub() {
+        if (!hasPendingScrub) {
+            return;
+        }
+        hasPendingScrub = false;
+        float x = scrubX - offset;
+        int index = Math.round((x - linesArea.left) / projection.getBetween());
+        index = Math.max(0, Math.min(dataSize - 1, index));
+        int lineIndex = hitIndex.find(datas, index, scrubY, Float.MAX_VALUE, projection);
+        if (lineIndex == -1 || (clickIndexs != null && clickIndexs[0] == index && clickIndexs[1] == lineIndex)) {
+            return;
+        }
+        showHint(index, lineIndex);
+        if (onScrubListener != null) {
+            onScrubListener.onScrub(index, lineIndex);
+        }
+    }
+
+    /**
+     * 结束拖动查找，提示开始逐渐消失
+     */
+    private void endScrub() {
+        isScrubbing = false;
+        hasPendingScrub = false;
+        startTimeOfClickHint = AnimationUtils.currentAnimationTimeMillis();
+        invalidate();
+        if (onScrubListener != null) {
+            onScrubListener.onScrubEnd();
+        }
+    }
+
     private void initOrResetVelocityTracker() {
         if (velocityTracker == null) {
             velocityTracker = VelocityTracker.obtain();
@@ -584,78 +1019,17 @@ public class SuitLines extends View {
      * @return
      */
     private int[] findSuitEdgeInVisual() {
-        int startIndex = 0, endIndex = datas.get(0).size() - 1;
-        if (offset == 0) {// 不可滑动或当前位于最左边
-            startIndex = 0;
-            endIndex = Math.min(datas.get(0).size() - 1, maxOfVisible - 1);
-        } else if (Math.abs(offset) == maxOffset) {// 可滑动且当前位于最右边
-            endIndex = datas.get(0).size() - 1;
-            startIndex = endIndex - maxOfVisible + 1;
-        } else {
-            float startX = linesArea.left - offset;
-            float endX = linesArea.right - offset;
-            if (datas.get(0).size() > maxOfVisible) {
-                // 找到指定区间的第一个被发现的点
-                int suitKey = 0;
-                int low = 0;
-                int high = datas.get(0).size() - 1;
-                List<Unit> i = datas.get(0);
-                while (low <= high) {
-                    int mid = (low + high) >>> 1;
-                    Unit midVal = i.get(mid);
-                    if (midVal.getXY().x < startX) {
-                        low = mid + 1;
-                    } else if (midVal.getXY().x > endX) {
-                        high = mid - 1;
-                    } else {
-                        suitKey = mid;
-                        break;
-                    }
-                }
-                int bakKey = suitKey;
-                // 先左边
-                while (suitKey >= 0) {
-                    startIndex = suitKey;
-                    if (datas.get(0).get(suitKey).getXY().x <= startX) {
-                        break;
-                    }
-                    suitKey--;
-                }
-                suitKey = bakKey;
-                // 再右边
-                while (suitKey < datas.get(0).size()) {
-                    endIndex = suitKey;
-                    if (datas.get(0).get(suitKey).getXY().x >= endX) {
-                        break;
-                    }
-                    suitKey++;
-                }
-            }
-        }
-        return new int[]{startIndex, endIndex};
+        return Viewport.searchEdge(projection, offset, maxOffset, dataSize, countOfVisible(),
+                linesArea.left, linesArea.right);
     }
 
     /**
-     * 1. ax+b >= y
-     * 2. a(x+1)+b <= y
-     * 得到： (int)x = (y-b) / a
-     * 由于 y = b - offset
-     * 所以：(int)x = |offset| / a
+     * 按offset直接计算可见区间，见{@link Viewport#findEdge}
+     * @param edge  用于存放结果，为null时才创建
      * @return
      */
-    private int[] findSuitEdgeInVisual2() {
-        int startIndex, endIndex;
-        if (offset == 0) {// 不可滑动或当前位于最左边
-            startIndex = 0;
-            endIndex = Math.min(datas.get(0).size() - 1, maxOfVisible - 1);
-        } else if (Math.abs(offset) == maxOffset) {// 可滑动且当前位于最右边
-            endIndex = datas.get(0).size() - 1;
-            startIndex = endIndex - maxOfVisible + 1;
-        } else {
-            startIndex = (int) (Math.abs(offset) / realBetween);
-            endIndex = startIndex + maxOfVisible;
-        }
-        return new int[]{startIndex, endIndex};
+    private int[] findSuitEdgeInVisual2(int[] edge) {
+        return Viewport.findEdge(offset, maxOffset, realBetween, dataSize, countOfVisible(), edge);
     }
 
     /**
@@ -666,36 +1040,51 @@ public class SuitLines extends View {
      * @param endIndex
      */
     private void drawLines(Canvas canvas, int startIndex, int endIndex) {
-        for (int i = 0; i < paths.size(); i++) {
-            paths.get(i).reset();
+        beginPhase(FrameMetrics.BUILD_PATHS);
+        configurePathBuilder(pathBuilder);
+        buildPaths(startIndex, endIndex, offset, isAniming);
+        endPhase(FrameMetrics.BUILD_PATHS);
+        beginPhase(FrameMetrics.DRAW_PATHS);
+        drawExsitDirectly(canvas);
+        endPhase(FrameMetrics.DRAW_PATHS);
+        if (frameMetrics != null) {
+            frameMetrics.markPathsRebuilt();
+            frameMetrics.addPoints((endIndex - startIndex + 1) * datas.size());
         }
-        for (int i = startIndex; i <= endIndex; i++) {
-            for (int j = 0; j < datas.size(); j++) {
-                Unit current = datas.get(j).get(i);
-                float curY = zeroAxisValue - (zeroAxisValue - current.getXY().y) * current.getPercent();
-                if (i == startIndex) {
-                    paths.get(j).moveTo(current.getXY().x, curY);
-                    continue;
-                }
-                if (lineType == SEGMENT) {
-                    paths.get(j).lineTo(current.getXY().x, curY);
-                } else if (lineType == CURVE) {
-                    // 到这里肯定不是起始点，所以可以减1
-                    Unit previous = datas.get(j).get(i - 1);
-                    // 两个锚点的坐标x为中点的x，y分别是两个连接点的y
-                    paths.get(j).cubicTo((previous.getXY().x + current.getXY().x) / 2,
-                            zeroAxisValue - (zeroAxisValue - previous.getXY().y) * previous.getPercent(),
-                            (previous.getXY().x + current.getXY().x) / 2, curY,
-                            current.getXY().x, curY);
-                }
-                if (!needCoverLine && isLineFill() && i == endIndex) {
-                    paths.get(j).lineTo(current.getXY().x, linesArea.bottom);
-                    paths.get(j).lineTo(datas.get(j).get(startIndex).getXY().x, linesArea.bottom);
-                    paths.get(j).close();
-                }
+    }
+
+    /**
+     * 按pathBuilder当前的配置连接每条line，结果为path或者线段
+     */
+    private void buildPaths(int startIndex, int endIndex, float offset, boolean withPercents) {
+        for (int j = 0; j < datas.size(); j++) {
+            if (pathBuilder.isAsLines()) {
+                pathBuilder.buildLines(segmentsOf(j), datas.get(j), startIndex, endIndex,
+                        projection, zeroAxisValue, offset, withPercents);
+            } else {
+                pathBuilder.build(paths.get(j), datas.get(j), startIndex, endIndex,
+                        projection, zeroAxisValue, linesArea.bottom, offset, withPercents);
             }
         }
-        drawExsitDirectly(canvas);
+    }
+
+    private PathBuilder.Segments segmentsOf(int j) {
+        while (segments.size() <= j) {
+            segments.add(new PathBuilder.Segments());
+        }
+        return segments.get(j);
+    }
+
+    private void configurePathBuilder(PathBuilder builder) {
+        builder.set(lineType, !needCoverLine && isLineFill(), needDownSampling, canDrawAsLines());
+    }
+
+    /**
+     * 不填充的实线线段不需要path的连接处理，直接以canvas.drawLines绘制
+     * @return
+     */
+    private boolean canDrawAsLines() {
+        return lineType == SEGMENT && !isLineFill() && lineStyle == SOLID;
     }
 
     /**
@@ -703,21 +1092,37 @@ public class SuitLines extends View {
      * @param canvas
      */
     private void drawExsitDirectly(Canvas canvas) {
+        drawPaths(canvas, suitEdge[0], suitEdge[1], linesArea.left - offset, linesArea.right - offset);
+    }
+
+    /**
+     * draw已经连接好的path
+     * @param canvas
+     * @param startIndex    path的起始点，用于fill形态时闭合
+     * @param endIndex      path的结束点
+     * @param left          边缘线的裁剪区域
+     * @param right
+     */
+    private void drawPaths(Canvas canvas, int startIndex, int endIndex, float left, float right) {
         // TODO 需要优化
+        boolean asLines = pathBuilder.isAsLines();
         for (int j = 0; j < datas.size(); j++) {
-            if (!isLineFill() || !needCoverLine) {
+            if (asLines) {
+                PathBuilder.Segments segmentsOfLine = segmentsOf(j);
+                canvas.drawLines(segmentsOfLine.points, 0, segmentsOfLine.count, paints.get(j));
+            } else if (!isLineFill() || !needCoverLine) {
                 canvas.drawPath(paths.get(j), paints.get(j));
             } else {
                 if (needCoverLine) {
-                    coverLinePaint.setColor(Util.tryGetStartColorOfLinearGradient((LinearGradient) paints.get(j).getShader()));
+                    coverLinePaint.setColor(getCoverLineColor(j));
                     canvas.save();
-                    canvas.clipRect(linesArea.left - offset, linesArea.top, linesArea.right - offset, linesArea.bottom);
+                    canvas.clipRect(left, linesArea.top, right, linesArea.bottom);
                     // 由于paint的stroke是双边，所以下一个draw不会覆盖当前已经的draw
                     canvas.drawPath(paths.get(j), coverLinePaint);
                     canvas.restore();
                     tmpPath.set(paths.get(j));
-                    tmpPath.lineTo(datas.get(j).get(suitEdge[1]).getXY().x, linesArea.bottom);
-                    tmpPath.lineTo(datas.get(j).get(suitEdge[0]).getXY().x, linesArea.bottom);
+                    tmpPath.lineTo(projection.x(endIndex), linesArea.bottom);
+                    tmpPath.lineTo(projection.x(startIndex), linesArea.bottom);
                     tmpPath.close();
                     canvas.drawPath(tmpPath, paints.get(j));
                     tmpPath.reset();
@@ -727,70 +1132,204 @@ public class SuitLines extends View {
         // TODO 画点
     }
 
-    private float calcReferenceLengthOf(int j) {
-        return linesArea.height() * 2 - datas.get(j).get(suitEdge[0]).getXY().y
-                - datas.get(j).get(suitEdge[1]).getXY().y
-                + datas.get(j).get(suitEdge[1]).getXY().x - datas.get(j).get(suitEdge[0]).getXY().x;
-    }
-
     /**
-     * 画提示文本和辅助线
-     * @param canvas
+     * 边缘线的颜色为line渐变色的起始颜色，只在shader变化时才通过反射获取
+     * @param j
+     * @return
      */
-    private void drawClickHint(Canvas canvas) {
-        Unit cur = datas.get(clickIndexs[1]).get(clickIndexs[0]);
-        canvas.drawLine(datas.get(clickIndexs[1]).get(suitEdge[0]).getXY().x,cur.getXY().y,
-                datas.get(clickIndexs[1]).get(suitEdge[1]).getXY().x,cur.getXY().y, hintPaint);
-        canvas.drawLine(cur.getXY().x,linesArea.bottom,
-                cur.getXY().x,linesArea.top, hintPaint);
-        RectF bak = new RectF(hintArea);
-        bak.offset(-offset, 0);
-        hintPaint.setAlpha(100);
-        hintPaint.setStyle(Paint.Style.FILL);
-        canvas.drawRect(bak, hintPaint);
-        hintPaint.setColor(Color.WHITE);
-        if (!TextUtils.isEmpty(cur.getExtX())) {
-            canvas.drawText("x : " + cur.getExtX(), bak.centerX(), bak.centerY() - 12, hintPaint);
+    private int getCoverLineColor(int j) {
+        if (coverLineColors.length < paints.size()) {
+            coverLineColors = new int[paints.size()];
+            shadersOfCoverLineColors = new Shader[paints.size()];
         }
-        canvas.drawText("y : " + cur.getValue(), bak.centerX(),
-                bak.centerY() + 12 + Util.getTextHeight(hintPaint), hintPaint);
-        hintPaint.setColor(hintColor);
+        Shader shader = paints.get(j).getShader();
+        if (shadersOfCoverLineColors[j] != shader) {
+            shadersOfCoverLineColors[j] = shader;
+            coverLineColors[j] = Util.tryGetStartColorOfLinearGradient((LinearGradient) shader);
+        }
+        return coverLineColors[j];
     }
 
     /**
-     * 画x轴,默认取第一条线的值
-     * @param canvas
-     * @param startIndex
-     * @param endIndex
+     * 动画中每帧的path都不同，fitVisibleY时y轴区间随可见区域变化，都不适合缓存
+     * @return
      */
-    private void drawX(Canvas canvas, int startIndex, int endIndex) {
-        canvas.drawLine(datas.get(0).get(startIndex).getXY().x, xArea.top,
-                datas.get(0).get(endIndex).getXY().x, xArea.top, xyPaint);
-        for (int i = startIndex; i <= endIndex; i++) {
-            String extX = datas.get(0).get(i).getExtX();
-            if (TextUtils.isEmpty(extX)) {
+    private boolean canUseTiles() {
+        // 缩放中每帧的点距都不同，tile无法复用
+        return tileCache != null && !isAniming && !isZooming && !needFitVisibleY() && dataSize > 0;
+    }
+
+    /**
+     * 数据源模式下只有可见区域附近的点，y轴区间只能按可见区域调整
+     * @return
+     */
+    private boolean needFitVisibleY() {
+        return fitVisibleY || dataSource != null;
+    }
+
+    /**
+     * 第几个tile包含x
+     * @param x 相对canvas而不是linesArea
+     * @return
+     */
+    private int tileOf(float x) {
+        return Math.max(0, (int) Math.floor((x - linesArea.left) / TileCache.TILE_WIDTH));
+    }
+
+    /**
+     * 绘制可见区域中的tile，缺少的tile先绘制到bitmap中
+     * @param canvas 已经按offset平移
+     */
+    private void drawTiles(Canvas canvas) {
+        int height = (int) Math.ceil(linesArea.height());
+        int last = tileOf(linesArea.right - offset);
+        tileCache.beginFrame();
+        for (int k = tileOf(linesArea.left - offset); k <= last; k++) {
+            float tileLeft = linesArea.left + k * TileCache.TILE_WIDTH;
+            Bitmap tile = tileCache.get(k);
+            if (tile == null) {
+                tile = tileCache.obtain(TileCache.TILE_WIDTH, height);
+                renderTile(tile, tileLeft);
+                // 放入后在这一帧中不会被淘汰
+                tileCache.put(k, tile);
+            }
+            canvas.drawBitmap(tile, tileLeft, linesArea.top, null);
+        }
+    }
+
+    /**
+     * 将[tileLeft, tileLeft + TILE_WIDTH)之间的lines绘制到tile中，
+     * 两侧各多连接一个点，使相邻tile在边界处的线完全一致
+     * @param tile
+     * @param tileLeft
+     */
+    private void renderTile(Bitmap tile, float tileLeft) {
+        float between = projection.getBetween();
+        int startIndex = Math.max(0, (int) Math.floor((tileLeft - linesArea.left) / between));
+        int endIndex = Math.min(dataSize - 1,
+                (int) Math.ceil((tileLeft + TileCache.TILE_WIDTH - linesArea.left) / between));
+        if (startIndex > endIndex) {
+            return;
+        }
+        configurePathBuilder(pathBuilder);
+        // M4按tile自身的像素列对齐
+        buildPaths(startIndex, endIndex, -tileLeft, false);
+        if (frameMetrics != null) {
+            frameMetrics.addPoints((endIndex - startIndex + 1) * datas.size());
+        }
+        tileCanvas.setBitmap(tile);
+        tileCanvas.save();
+        tileCanvas.translate(-tileLeft, -linesArea.top);
+        drawPaths(tileCanvas, startIndex, endIndex, tileLeft, tileLeft + TileCache.TILE_WIDTH);
+        tileCanvas.restore();
+        tileCanvas.setBitmap(null);
+    }
+
+    private float calcReferenceLengthOf(int j) {
+        Series line = datas.get(j);
+        return linesArea.height() * 2 - line.getY(suitEdge[0]) - line.getY(suitEdge[1])
+                + projection.x(suitEdge[1]) - projection.x(suitEdge[0]);
+    }
+
+    /**
+     * 画提示文本和辅助线
+     * @param canvas
+     */
+    private void drawClickHint(Canvas canvas) {
+        if (isScrubbing) {
+            // 拖动查找时一直显示
+            hintPaint.setAlpha(100);
+        } else {
+            long elapsed = AnimationUtils.currentAnimationTimeMillis() - startTimeOfClickHint;
+            if (elapsed >= durationOfClickHint) {
+                hintPaint.setAlpha(100);
+                clickIndexs = null;
+                return;
+            }
+            // 辅助线的透明度从100线性变为30，结束前每一帧都请求下一次vsync
+            hintPaint.setAlpha(100 - (int) (70 * elapsed / durationOfClickHint));
+            Util.postInvalidateOnAnimation(this);
+        }
+        Series line = datas.get(clickIndexs[1]);
+        int cur = clickIndexs[0];
+        canvas.drawLine(projection.x(suitEdge[0]), line.getY(cur),
+                projection.x(suitEdge[1]), line.getY(cur), hintPaint);
+        canvas.drawLine(projection.x(cur), linesArea.bottom,
+                projection.x(cur), linesArea.top, hintPaint);
+        RectF bak = tmpRect;
+        bak.set(hintArea);
+        bak.offset(-offset, 0);
+        hintPaint.setAlpha(100);
+        hintPaint.setStyle(Paint.Style.FILL);
+        canvas.drawRect(bak, hintPaint);
+        hintPaint.setColor(Color.WHITE);
+        if (hintTextOfX.length() > 0) {
+            canvas.drawText(hintTextOfX, 0, hintTextOfX.length(), bak.centerX(), bak.centerY() - 12, hintPaint);
+        }
+        canvas.drawText(hintTextOfY, 0, hintTextOfY.length(), bak.centerX(),
+                bak.centerY() + 12 + Util.getTextHeight(hintPaint), hintPaint);
+        hintPaint.setColor(hintColor);
+    }
+
+    /**
+     * 画x轴,默认取第一条线的值
+     * @param canvas
+     * @param startIndex
+     * @param endIndex
+     */
+    private void drawX(Canvas canvas, int startIndex, int endIndex) {
+        Series line = datas.get(0);
+        // 缩小后只绘制间隔为step的整数倍的点，数量与未缩放时相近，并且滚动时不会跳动
+        int step = zoom < 1 ? (int) Math.ceil(1 / zoom) : 1;
+        int first = (startIndex + step - 1) / step * step;
+        // x轴与所有刻度线一起以drawLines绘制
+        int maxCount = (Math.max(0, endIndex - first) / step + 2) * 4;
+        if (xAxisLines.length < maxCount) {
+            xAxisLines = new float[maxCount];
+        }
+        float[] lines = xAxisLines;
+        lines[0] = projection.x(startIndex);
+        lines[1] = xArea.top;
+        lines[2] = projection.x(endIndex);
+        lines[3] = xArea.top;
+        int count = 4;
+        float baseY = Util.calcTextSuitBaseY(xArea, xyPaint);
+        for (int i = first; i <= endIndex; i += step) {
+            String extX = line.getExtX(i);
+            if (TextUtils.isEmpty(extX)) {
                 continue;
             }
             if (i == startIndex && startIndex == 0) {
                 xyPaint.setTextAlign(Paint.Align.LEFT);
-            } else if (i == endIndex && endIndex == datas.get(0).size()-1) {
+            } else if (i == endIndex && endIndex == dataSize-1) {
                 xyPaint.setTextAlign(Paint.Align.RIGHT);
             } else {
                 xyPaint.setTextAlign(Paint.Align.CENTER);
             }
-            canvas.drawText(extX, datas.get(0).get(i).getXY().x, Util.calcTextSuitBaseY(xArea, xyPaint), xyPaint);
-            canvas.drawLine(datas.get(0).get(i).getXY().x, xArea.top,
-                    datas.get(0).get(i).getXY().x, xArea.top+basePadding, xyPaint);
+            float x = projection.x(i);
+            canvas.drawText(extX, x, baseY, xyPaint);
+            lines[count++] = x;
+            lines[count++] = xArea.top;
+            lines[count++] = x;
+            lines[count++] = xArea.top + basePadding;
         }
+        canvas.drawLines(lines, 0, count, xyPaint);
     }
 
 
     private void drawY(Canvas canvas) {
-        if (yAreaBuffer == null) {
+        boolean isBufferDirty = (dirtyFlags & DIRTY_Y_BUFFER) != 0;
+        dirtyFlags &= ~DIRTY_Y_BUFFER;
+        if (yAreaBuffer == null || isBufferDirty) {
+            if (frameMetrics != null) {
+                frameMetrics.markYBufferRegenerated();
+            }
             // 可以在这里自定义y轴的绘制以及逻辑，例如线的类型、颜色、大小等
-            yAreaBuffer = Bitmap.createBitmap((int)yArea.width(), (int)yArea.height(), Bitmap.Config.ARGB_8888);
-            Rect yRect = new Rect(0, 0, yAreaBuffer.getWidth(), yAreaBuffer.getHeight());
-            Canvas yCanvas = new Canvas(yAreaBuffer);
+            yAreaBuffer = obtainYBuffer(yAreaBuffer, (int)yArea.width(), (int)yArea.height());
+            Rect yRect = tmpBufferRect;
+            yRect.set(0, 0, yAreaBuffer.getWidth(), yAreaBuffer.getHeight());
+            Canvas yCanvas = bufferCanvas;
+            yCanvas.setBitmap(yAreaBuffer);
             yCanvas.drawLine(yRect.right, yRect.bottom, yRect.right, yRect.top, xyPaint);
             for (int i = 0; i < countOfY; i++) {
                 xyPaint.setTextAlign(Paint.Align.RIGHT);
@@ -807,41 +1346,83 @@ public class SuitLines extends View {
                     extY = minAndMaxOfY[0] + (minAndMaxOfY[1] - minAndMaxOfY[0]) / (countOfY - 1) * i;
                     y = yAxis = yRect.bottom - yRect.height() / (countOfY - 1) * i + Util.getTextHeight(xyPaint)/2;
                 }
-                yCanvas.drawText(new DecimalFormat("##.#").format(extY), yRect.right - basePadding, y, xyPaint);
+                yCanvas.drawText(yLabelFormat.format(extY), yRect.right - basePadding, y, xyPaint);
                 yCanvas.drawLine(yRect.right - basePadding, yAxis, yRect.right, yAxis, xyPaint);
             }
-            if (minAndMaxOfY[0] != 0 && minAndMaxOfY[1] != 0) {
+            if (minAndMaxOfY[0] < 0 && minAndMaxOfY[1] > 0) {
                 float y = zeroAxisValue - yArea.top;
                 yCanvas.drawText("0", yRect.right - basePadding, y, xyPaint);
                 yCanvas.drawLine(yRect.right - basePadding, y, yRect.right, y, xyPaint);
             }
+            yCanvas.setBitmap(null);
+            // 辅助线与刻度一起计算，切换showYGrid时不需要重新计算
+            buildYGridLines();
         }
-        canvas.drawBitmap(yAreaBuffer,yArea.left,yArea.top,null);
+        // 缓存中只有透明度，按xyPaint的颜色着色，透明度已经包含在缓存中
+        yBufferPaint.setColor(xyPaint.getColor() | 0xFF000000);
+        canvas.drawBitmap(yAreaBuffer,yArea.left,yArea.top,yBufferPaint);
 
-        if (yGridBuffer == null) {
-            // 可以在这里自定义刻度辅助线的绘制，例如线的类型、颜色、大小等
-            yGridBuffer = Bitmap.createBitmap((int)linesArea.width(), (int)linesArea.height(), Bitmap.Config.ARGB_8888);
-            Rect yRect = new Rect(0, 0, yGridBuffer.getWidth(), yGridBuffer.getHeight());
-            Canvas yCanvas = new Canvas(yGridBuffer);
-            for (int i = 0; i < countOfY; i++) {
-                float yAxis;
-                if (i == 0) {
-                    yAxis = yRect.bottom;
-                } else if (i == countOfY - 1) {
-                    yAxis = yRect.top;
-                } else {
-                    yAxis = yRect.bottom - yRect.height() / (countOfY - 1) * i + Util.getTextHeight(xyPaint)/2;
-                }
-                yCanvas.drawLine(0, yAxis, yCanvas.getWidth(), yAxis, xyPaint);
-            }
-            if (minAndMaxOfY[0] != 0 && minAndMaxOfY[1] != 0) {
-                float y = zeroAxisValue - yArea.top;
-                yCanvas.drawLine(0, y, yCanvas.getWidth(), y, xyPaint);
+        if (showYGrid && yGridCount > 0) {
+            // 与原来绘制到linesArea大小的bitmap中一样，超出的部分不可见
+            canvas.save();
+            canvas.clipRect(linesArea.left, linesArea.top,
+                    linesArea.left + (int) linesArea.width(), linesArea.top + (int) linesArea.height());
+            canvas.drawLines(yGridLines, 0, yGridCount, xyPaint);
+            canvas.restore();
+        }
+    }
+
+    /**
+     * 计算每个刻度对应的辅助线，可以在这里自定义刻度辅助线的位置
+     */
+    private void buildYGridLines() {
+        int count = (countOfY + 1) * 4;
+        if (yGridLines.length < count) {
+            yGridLines = new float[count];
+        }
+        float left = linesArea.left, right = left + (int) linesArea.width();
+        float top = linesArea.top, height = (int) linesArea.height();
+        float[] lines = yGridLines;
+        count = 0;
+        for (int i = 0; i < countOfY; i++) {
+            float yAxis;
+            if (i == 0) {
+                yAxis = height;
+            } else if (i == countOfY - 1) {
+                yAxis = 0;
+            } else {
+                yAxis = height - height / (countOfY - 1) * i + Util.getTextHeight(xyPaint)/2;
             }
+            lines[count++] = left;
+            lines[count++] = top + yAxis;
+            lines[count++] = right;
+            lines[count++] = top + yAxis;
+        }
+        if (minAndMaxOfY[0] < 0 && minAndMaxOfY[1] > 0) {
+            float y = zeroAxisValue - yArea.top;
+            lines[count++] = left;
+            lines[count++] = top + y;
+            lines[count++] = right;
+            lines[count++] = top + y;
         }
-        if (showYGrid) {
-            canvas.drawBitmap(yGridBuffer,linesArea.left,linesArea.top,null);
+        yGridCount = count;
+    }
+
+    /**
+     * 从{@link BitmapPool}中得到透明的bitmap，原有的bitmap放回池中；
+     * y轴只有xyPaint一种颜色，所以只保存透明度，绘制时再着色
+     * @param buffer    可为null
+     * @param width
+     * @param height
+     * @return
+     */
+    private Bitmap obtainYBuffer(Bitmap buffer, int width, int height) {
+        if (buffer != null && buffer.getWidth() == width && buffer.getHeight() == height) {
+            buffer.eraseColor(Color.TRANSPARENT);
+            return buffer;
         }
+        BitmapPool.release(buffer);
+        return BitmapPool.obtain(width, height, Bitmap.Config.ALPHA_8);
     }
 
     /**
@@ -872,33 +1453,120 @@ public class SuitLines extends View {
     }
 
 
-    private void feedInternal(Map<Integer, List<Unit>> entry, List<Paint> entryPaints, boolean needAnim) {
-        cancelAllAnims();
-        reset(); // 该方法调用了datas.clear();
+    /**
+     * 在主线程中调用：取消还未完成的填充，然后在后台计算新的数据，完成后再替换当前显示的数据；
+     * 在此之前仍显示之前的数据
+     */
+    private void feedInternal(List<Series> entry, List<Paint> entryPaints, boolean needAnim) {
+        cancelPreparing();
         if (entry.isEmpty()) {
+            cancelAllAnims();
+            reset(); // 该方法调用了datas.clear();
             invalidate();
             return;
         }
         if (entry.size() != entryPaints.size()) {
             throw new IllegalArgumentException("线的数量应该和画笔数量对应");
+        }
+        PathBuilder builder = null;
+        if (!needAnim && !fitVisibleY && !canDrawAsLines()) {
+            // 动画或fitVisibleY时path在绘制时才能确定，线段的生成足够快，不需要预先生成
+            builder = new PathBuilder();
+            configurePathBuilder(builder);
+        }
+        final Snapshot snapshot = new Snapshot(entry, entryPaints, needAnim, fitVisibleY,
+                buildValidArea(), xyPaint, basePadding, maxOfVisible, lineType == MONOTONE,
+                needDownSampling, builder);
+        snapshot.isTraced = metricsListener != null;
+        preparingSnapshot = snapshot;
+        preparingFuture = Workers.prepare().submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!snapshot.prepare()) {
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    snapshot.fail(e);
+                }
+                handler.post(publishSnapshotRunnable);
+            }
+        });
+    }
+
+    private void cancelPreparing() {
+        if (preparingSnapshot != null) {
+            preparingSnapshot.cancel();
+            preparingFuture.cancel(true);
+            preparingSnapshot = null;
+            preparingFuture = null;
+        }
+    }
+
+    /**
+     * 在主线程中用准备好的结果替换当前的数据，之后onDraw只使用这些结果
+     * @param snapshot
+     */
+    private void publish(Snapshot snapshot) {
+        cancelAllAnims();
+        reset(); // 该方法调用了datas.clear();
+        paints.clear();
+        paints.addAll(snapshot.paints);
+        datas.addAll(snapshot.lines);
+        // 计算期间lineType可能已经变化
+        updateSlopesOfLines();
+        if (snapshot.fitVisibleY != fitVisibleY) {
+            for (int j = 0; j < datas.size(); j++) {
+                if (fitVisibleY) {
+                    datas.get(j).buildMinMaxTree();
+                } else {
+                    datas.get(j).releaseMinMaxTree();
+                }
+            }
+        }
+        boolean hasPaths = false;
+        if (snapshot.isStale(buildValidArea(), xyPaint, fitVisibleY)) {
+            // 计算期间布局或配置发生了变化，在主线程中重新计算
+            updateDataSize();
+            calcMaxUnit(datas);
+            calcAreas();
+            calcUnitXY();
         } else {
-            paints.clear();
-            paints.addAll(entryPaints);
+            dataSize = snapshot.dataSize;
+            System.arraycopy(snapshot.actualMinAndMax, 0, tmpMinAndMax, 0, 2);
+            System.arraycopy(snapshot.minAndMaxOfY, 0, minAndMaxOfY, 0, 2);
+            System.arraycopy(snapshot.minAndMaxOfY, 0, labelRangeOfY, 0, 2);
+            yArea = snapshot.yArea;
+            xArea = snapshot.xArea;
+            linesArea = snapshot.linesArea;
+            hintArea = snapshot.hintArea;
+            projection = snapshot.projection;
+            realBetween = snapshot.realBetween;
+            zeroAxisValue = snapshot.zeroAxisValue;
+            maxOffset = snapshot.maxOffset;
+            fitProjectedFrom = fitProjectedTo = -1;
+            configurePathBuilder(pathBuilder);
+            hasPaths = snapshot.paths != null && snapshot.pathBuilder.isSameAs(pathBuilder);
         }
-        if (entry.size() != paths.size()) {
-            paths.clear();
-            for (int i = 0; i < entry.size(); i++) {
+        paths.clear();
+        if (hasPaths) {
+            // 直接使用预先生成的path，第一帧不需要再连接
+            paths.addAll(snapshot.paths);
+            suitEdge = snapshot.suitEdge;
+            lastOffset = offset;
+        } else {
+            for (int i = 0; i < datas.size(); i++) {
                 paths.add(new Path());
             }
         }
-        datas.putAll(entry);
-        calcMaxUnit(datas);
-        calcAreas();
-        calcUnitXY();
-        if (needAnim) {
+        if (snapshot.needAnim) {
             showWithAnims();
         } else {
-            forceToDraw = true;
+            if (hasPaths) {
+                dirtyFlags &= ~DIRTY_PATHS;
+            } else {
+                dirtyFlags |= DIRTY_PATHS;
+            }
             invalidate();
         }
     }
@@ -907,41 +1575,101 @@ public class SuitLines extends View {
      * 得到maxValueOfY
      * @param datas
      */
-    private void calcMaxUnit(Map<Integer, List<Unit>> datas) {
-        // 先“扁平”
-        List<Unit> allUnits = new ArrayList<>();
-        for (List<Unit> line : datas.values()) {
-            allUnits.addAll(line);
+    private void calcMaxUnit(List<Series> datas) {
+        // 一次遍历得到所有line的最值，不再拷贝和排序
+        Viewport.calcRangeOfY(datas, tmpMinAndMax, minAndMaxOfY);
+        System.arraycopy(minAndMaxOfY, 0, labelRangeOfY, 0, 2);
+    }
+
+    /**
+     * 按顺序处理标记的阶段，只有结果确实变化时才标记下一阶段
+     */
+    private void resolveDirty() {
+        if ((dirtyFlags & DIRTY_RANGE) != 0) {
+            dirtyFlags &= ~DIRTY_RANGE;
+            // fitVisibleY时y轴区间在绘制时按可见区域调整
+            if (!datas.isEmpty() && !needFitVisibleY()) {
+                float lastMin = minAndMaxOfY[0], lastMax = minAndMaxOfY[1];
+                calcMaxUnit(datas);
+                if (lastMin != minAndMaxOfY[0] || lastMax != minAndMaxOfY[1]) {
+                    dirtyFlags |= DIRTY_LAYOUT | DIRTY_DATA | DIRTY_Y_BUFFER;
+                }
+            }
+        }
+        resolveLayout();
+        if ((dirtyFlags & DIRTY_DATA) != 0) {
+            dirtyFlags &= ~DIRTY_DATA;
+            if (!datas.isEmpty() && linesArea != null) {
+                float lastBetween = realBetween;
+                calcUnitXY();
+                // 保持当前可见的第一个点不变，而不是回到起点
+                if (lastBetween > 0) {
+                    offset = offset * realBetween / lastBetween;
+                }
+                offset = offset > 0 ? 0 : (Math.abs(offset) > maxOffset) ? -maxOffset : offset;
+            }
+        }
+        if ((dirtyFlags & DIRTY_STYLE) != 0
+                && !pathBuilder.isSameAs(lineType, !needCoverLine && isLineFill(), needDownSampling,
+                canDrawAsLines())) {
+            // path的形状变化，需要重新连接
+            updateSlopesOfLines();
+            dirtyFlags |= DIRTY_PATHS;
+        }
+    }
+
+    /**
+     * 单调曲线需要维护每个点的切线斜率，其它类型不需要
+     */
+    private void updateSlopesOfLines() {
+        for (int j = 0; j < datas.size(); j++) {
+            if (lineType == MONOTONE) {
+                datas.get(j).buildSlopes();
+            } else {
+                datas.get(j).releaseSlopes();
+            }
+        }
+    }
+
+    /**
+     * 区域的大小变化时才重新计算点的坐标以及y轴的缓存
+     */
+    private void resolveLayout() {
+        if ((dirtyFlags & DIRTY_LAYOUT) == 0 || measuredArea == null) {
+            return;
+        }
+        RectF lastLinesArea = linesArea;
+        RectF lastYArea = yArea;
+        calcAreas();
+        if (lastLinesArea != null && lastLinesArea.equals(linesArea) && lastYArea.equals(yArea)) {
+            return;
         }
-        // 再拷贝，防止引用问题
-        List<Unit> bakUnits = new ArrayList<>();
-        for (int i = 0; i < allUnits.size(); i++) {
-            bakUnits.add(allUnits.get(i).clone());
+        if (lastLinesArea == null || lastLinesArea.top != linesArea.top || lastLinesArea.bottom != linesArea.bottom) {
+            // 渐变只与上下边缘有关
+            basePaint.setShader(buildPaintColor(defaultLineColor));
         }
-        // 最后排序，得到最大值
-        Collections.sort(bakUnits);
-        Unit maxUnit = bakUnits.get(bakUnits.size() - 1);
-        Unit minUnit = bakUnits.get(0);
-        minAndMaxOfY[0] = Util.getCeil5(Math.min(minUnit.getValue(), 0));
-        minAndMaxOfY[1] = Util.getCeil5(Math.max(maxUnit.getValue(), 0));
+        dirtyFlags |= DIRTY_DATA | DIRTY_Y_BUFFER;
     }
 
     /**
      * 重新计算三个区域的大小
      */
     private void calcAreas() {
-        float textWidth = Math.max(xyPaint.measureText(String.valueOf(minAndMaxOfY[0])),
-                xyPaint.measureText(String.valueOf(minAndMaxOfY[1])));
-        float maxWidth = Math.max(xyPaint.measureText("00"), textWidth);
-        RectF validArea = new RectF(getPaddingLeft() + basePadding, getPaddingTop() + basePadding,
+        dirtyFlags &= ~DIRTY_LAYOUT;
+        RectF[] areas = Snapshot.calcAreas(xyPaint, needFitVisibleY() ? labelRangeOfY : minAndMaxOfY,
+                buildValidArea(), basePadding);
+        yArea = areas[0];
+        xArea = areas[1];
+        linesArea = areas[2];
+        hintArea = areas[3];
+    }
+
+    /**
+     * 去掉padding后的区域
+     */
+    private RectF buildValidArea() {
+        return new RectF(getPaddingLeft() + basePadding, getPaddingTop() + basePadding,
                 getMeasuredWidth() - getPaddingRight() - basePadding, getMeasuredHeight() - getPaddingBottom());
-        yArea = new RectF(validArea.left, validArea.top,
-                validArea.left + maxWidth + basePadding,
-                validArea.bottom - Util.getTextHeight(xyPaint) - basePadding * 2);
-        xArea = new RectF(yArea.right, yArea.bottom, validArea.right, validArea.bottom);
-        linesArea = new RectF(yArea.right+1, yArea.top, xArea.right, yArea.bottom);
-        hintArea = new RectF(linesArea.right-linesArea.right/4,linesArea.top,
-                linesArea.right,linesArea.top + linesArea.height()/4);
     }
 
     /**
@@ -949,29 +1677,221 @@ public class SuitLines extends View {
      * <br>同时得到了realBetween，maxOffset
      */
     private void calcUnitXY() {
-        float absValueOfY = Math.abs(minAndMaxOfY[1] - minAndMaxOfY[0]);
-        int realNum = Math.min(datas.get(0).size(), maxOfVisible);
-        realBetween = linesArea.width() / (realNum - 1);
+        dirtyFlags = (dirtyFlags & ~DIRTY_DATA) | DIRTY_PATHS;
+        calcRealBetween();
+        updateProjectionOfY();
+        if (needFitVisibleY()) {
+            // 只在绘制时计算可见区域中的点
+            fitProjectedFrom = fitProjectedTo = -1;
+        } else {
+            for (int j = 0; j < datas.size(); j++) {
+                projection.apply(datas.get(j), 0, datas.get(j).size());
+            }
+        }
+        calcMaxOffset();
+    }
+
+    /**
+     * 根据当前的y轴区间更新映射系数以及y为0时的坐标
+     */
+    private void updateProjectionOfY() {
         // 防止line的stroke部分在lineArea外被clip
         float padding = paints.get(0).getStrokeWidth() / 2;
-        for (int i = 0; i < datas.get(0).size(); i++) {
+        zeroAxisValue = Snapshot.setProjectionOfY(projection, linesArea, realBetween, minAndMaxOfY, padding);
+    }
+
+    /**
+     * 按[startIndex, endIndex]之间的点调整y轴区间，最值通过每条line的区间最值索引得到，
+     * 数据源为{@link RangedDataSource}时直接从数据源得到；
+     * 区间变化时才重建y轴的缓存，并且只计算可见区域中还未计算过的点
+     * @param startIndex
+     * @param endIndex
+     */
+    private void fitVisibleRange(int startIndex, int endIndex) {
+        visibleMinAndMax[0] = Float.POSITIVE_INFINITY;
+        visibleMinAndMax[1] = Float.NEGATIVE_INFINITY;
+        if (dataSource instanceof RangedDataSource) {
+            RangedDataSource source = (RangedDataSource) dataSource;
             for (int j = 0; j < datas.size(); j++) {
-                float curValue = datas.get(j).get(i).getValue();
-                float scale = new BigDecimal("1").subtract(
-                        (new BigDecimal(Float.toString(curValue))
-                                .subtract(new BigDecimal(Float.toString(minAndMaxOfY[0]))))
-                                .divide(new BigDecimal(Float.toString(absValueOfY)), 2,BigDecimal.ROUND_DOWN)
-                ).floatValue();
-                Log.d(TAG, "calcUnitXY: scale="+scale);
-
-                datas.get(j).get(i).setXY(new PointF(linesArea.left + realBetween * i,
-                        linesArea.top + linesArea.height() * scale + (scale == 0 ? padding : (scale == 1 ? -padding : 0))));
-                if (i == datas.get(0).size() - 1) {
-                    maxOffset = Math.abs(datas.get(j).get(i).getXY().x) - linesArea.width() - linesArea.left;
-                }
+                source.findMinAndMax(j, startIndex, endIndex + 1, visibleMinAndMax);
+            }
+        } else {
+            for (int j = 0; j < datas.size(); j++) {
+                datas.get(j).queryMinAndMax(startIndex, endIndex + 1, visibleMinAndMax);
             }
         }
-        zeroAxisValue = linesArea.top + linesArea.height() * minAndMaxOfY[1] / (minAndMaxOfY[1] - minAndMaxOfY[0]);
+        if (visibleMinAndMax[0] > visibleMinAndMax[1]) {
+            return;
+        }
+        int minOfY = Viewport.getFloor5(visibleMinAndMax[0]);
+        int maxOfY = Viewport.getUpper5(visibleMinAndMax[1]);
+        if (minOfY == maxOfY) {
+            maxOfY += 5;
+        }
+        if (minOfY != minAndMaxOfY[0] || maxOfY != minAndMaxOfY[1]) {
+            minAndMaxOfY[0] = minOfY;
+            minAndMaxOfY[1] = maxOfY;
+            invalidateYBuffer();
+            updateProjectionOfY();
+            fitProjectedFrom = fitProjectedTo = -1;
+            if (setLabelRangeOfY(Math.min(labelRangeOfY[0], minOfY), Math.max(labelRangeOfY[1], maxOfY))) {
+                // 刻度变宽，下一帧重新计算区域以及所有坐标
+                dirtyFlags |= DIRTY_LAYOUT;
+                invalidate();
+            }
+        }
+        if (fitProjectedFrom == -1 || startIndex > fitProjectedTo + 1 || endIndex < fitProjectedFrom - 1) {
+            projectAll(startIndex, endIndex + 1);
+            fitProjectedFrom = startIndex;
+            fitProjectedTo = endIndex;
+            return;
+        }
+        if (startIndex < fitProjectedFrom) {
+            projectAll(startIndex, fitProjectedFrom);
+            fitProjectedFrom = startIndex;
+        }
+        if (endIndex > fitProjectedTo) {
+            projectAll(fitProjectedTo + 1, endIndex + 1);
+            fitProjectedTo = endIndex;
+        }
+    }
+
+    /**
+     * @return y轴刻度文字需要的宽度是否变化
+     */
+    private boolean setLabelRangeOfY(float min, float max) {
+        float lastWidth = Snapshot.widthOfYLabels(xyPaint, labelRangeOfY);
+        labelRangeOfY[0] = min;
+        labelRangeOfY[1] = max;
+        return Snapshot.widthOfYLabels(xyPaint, labelRangeOfY) != lastWidth;
+    }
+
+    /**
+     * 计算所有line在[from, to)之间的点的坐标，两侧各多计算一个点，
+     * 使边缘点的切线斜率不依赖还未按当前区间计算的点
+     */
+    private void projectAll(int from, int to) {
+        from--;
+        to++;
+        for (int j = 0; j < datas.size(); j++) {
+            Series line = datas.get(j);
+            int first = line.firstIndex(), last = first + line.size();
+            projection.apply(line, Math.max(first, Math.min(from, last)), Math.max(first, Math.min(to, last)));
+        }
+    }
+
+    /**
+     * 数据源模式下，保证datas中的窗口包含[startIndex, endIndex]：<br>
+     * 窗口为可见区域两侧各扩展一屏，从页缓存中填充，还未加载的点为NaN；
+     * 窗口及两侧预取的页若不在缓存中则异步加载，加载完成后重新填充窗口
+     * @param startIndex
+     * @param endIndex
+     */
+    private void fillWindow(int startIndex, int endIndex) {
+        int margin = endIndex - startIndex + 1;
+        pageCache.request(Math.max(0, startIndex - margin - PageCache.PAGE_SIZE / 2),
+                Math.min(dataSize, endIndex + 1 + margin + PageCache.PAGE_SIZE / 2));
+        if (startIndex >= windowFrom && endIndex < windowTo && windowVersion == pageCache.getVersion()) {
+            return;
+        }
+        int from = Math.max(0, startIndex - margin);
+        int to = Math.min(dataSize, endIndex + 1 + margin);
+        for (int j = 0; j < datas.size(); j++) {
+            Series line = datas.get(j);
+            line.resetWindow(from, to - from);
+            for (int i = from; i < to; i++) {
+                line.set(i, pageCache.getValue(j, i), pageCache.getLabel(i));
+            }
+        }
+        windowFrom = from;
+        windowTo = to;
+        windowVersion = pageCache.getVersion();
+        // 窗口中的值已变化，需要重新计算坐标
+        fitProjectedFrom = fitProjectedTo = -1;
+        hitIndex.clear();
+    }
+
+    /**
+     * 在主线程中以数据源替换当前的数据
+     * @param source    为null时清空
+     * @param maxPages
+     */
+    private void applyDataSource(DataSource source, int maxPages) {
+        cancelPreparing();
+        cancelAllAnims();
+        reset(); // 该方法调用了datas.clear();
+        if (source == null) {
+            invalidate();
+            return;
+        }
+        dataSource = source;
+        maxPagesOfSource = maxPages;
+        pageCache = new PageCache(source, maxPages, pageLoadedRunnable);
+        if (pageCache.getLineCount() <= 0 || pageCache.getCount() <= 0) {
+            invalidate();
+            return;
+        }
+        paints.clear();
+        paths.clear();
+        for (int j = 0; j < pageCache.getLineCount(); j++) {
+            datas.add(new Series(0));
+            paints.add(buildNewPaint());
+            paths.add(new Path());
+        }
+        updateSlopesOfLines();
+        dataSize = pageCache.getCount();
+        windowFrom = windowTo = 0;
+        // 真正的区间在可见区域加载后确定
+        minAndMaxOfY[0] = 0;
+        minAndMaxOfY[1] = 5;
+        System.arraycopy(minAndMaxOfY, 0, labelRangeOfY, 0, 2);
+        if (source instanceof RangedDataSource) {
+            tmpMinAndMax[0] = Float.POSITIVE_INFINITY;
+            tmpMinAndMax[1] = Float.NEGATIVE_INFINITY;
+            for (int j = 0; j < datas.size(); j++) {
+                ((RangedDataSource) source).findMinAndMax(j, 0, dataSize, tmpMinAndMax);
+            }
+            if (tmpMinAndMax[0] <= tmpMinAndMax[1]) {
+                labelRangeOfY[0] = Viewport.getFloor5(tmpMinAndMax[0]);
+                labelRangeOfY[1] = Viewport.getUpper5(tmpMinAndMax[1]);
+            }
+        }
+        calcAreas();
+        calcUnitXY();
+        dirtyFlags |= DIRTY_PATHS;
+        invalidate();
+    }
+
+    /**
+     * 根据可见点数计算两点之间的距离
+     * @return
+     */
+    private float calcRealBetween() {
+        float between = Viewport.calcRealBetween(dataSize, maxOfVisible, linesArea.width());
+        if (zoom != 1) {
+            // 最多缩小到所有点都可见，数据源模式下为缓存的一部分
+            int maxCount = dataSource == null ? dataSize
+                    : Math.min(dataSize, maxPagesOfSource * PageCache.PAGE_SIZE / 4);
+            zoom = Viewport.clampZoom(zoom, between, maxCount, linesArea.width());
+        }
+        realBetween = between * zoom;
+        return realBetween;
+    }
+
+    /**
+     * 可见区域中最多的点数，未缩放时为maxOfVisible
+     * @return
+     */
+    private int countOfVisible() {
+        return Viewport.countOfVisible(zoom, realBetween, maxOfVisible, linesArea.width());
+    }
+
+    private void calcMaxOffset() {
+        maxOffset = Viewport.calcMaxOffset(projection, dataSize, linesArea.left, linesArea.width());
+    }
+
+    private void updateDataSize() {
+        dataSize = Viewport.calcDataSize(datas);
     }
 
     /**
@@ -981,151 +1901,293 @@ public class SuitLines extends View {
     private void cancelAllAnims() {
         // 不使用ViewRootImpl的getHandler()，否则影响其事件分发
         handler.removeCallbacksAndMessages(null);
+        synchronized (appendLock) {
+            // 待追加的数据不属于动画，需要继续处理
+            isAppendScheduled = pendingCount > 0;
+            if (isAppendScheduled) {
+                handler.post(drainAppendsRunnable);
+            }
+        }
+        if (preparingSnapshot != null && preparingSnapshot.isPrepared()) {
+            // 已准备好的填充也需要继续发布
+            handler.post(publishSnapshotRunnable);
+        }
         scroller.abortAnimation();
-        if (clickHintAnimator != null && clickHintAnimator.isRunning()) {
-            clickHintAnimator.removeAllUpdateListeners();
-            clickHintAnimator.cancel();
+        if (clickIndexs != null) {
             hintPaint.setAlpha(100);
-            clickHintAnimator = null;
+            clickIndexs = null;
         }
-        if (!animators.isEmpty()) {
-            for (int i = 0; i < animators.size(); i++) {
-                animators.get(i).removeAllUpdateListeners();
-                if (animators.get(i).isRunning()) {
-                    animators.get(i).cancel();
-                }
-            }
-            animators.clear();
+        if (isScrubbing) {
+            endScrub();
         }
-        if (!datas.isEmpty()) {
-            for (List<Unit> line : datas.values()) {
-                for (int i = 0; i < line.size(); i++) {
-                    line.get(i).cancelToEndAnim();
-                }
-            }
+        // onDraw不再请求下一帧
+        isAniming = false;
+        for (int j = 0; j < datas.size(); j++) {
+            datas.get(j).fillPercent(1f);
         }
         for (int i = 0; i < paths.size(); i++) {
             paths.get(i).reset();
         }
+        for (int i = 0; i < segments.size(); i++) {
+            segments.get(i).count = 0;
+        }
         invalidate();
     }
 
     // 每个1/x启动下一条line的动画
     private int percentOfStartNextLineAnim = 3;
-    /**
-     * 约定每间隔一组数据遍历总时间的一半就启动下一组数据的遍历
-     *
-     * @return 遍历时间+最后一组数据的等待时间+最后一个点的动画时间+缓冲时间
-     */
-    private long calcTotalCost() {
-        if (datas.isEmpty() || datas.get(0).isEmpty()) return 0;
-        long oneLineCost = calcVisibleLineCost();
-        return oneLineCost + oneLineCost / percentOfStartNextLineAnim * (datas.size() - 1) + Unit.DURATION + 16;
-    }
-
     /**
      * 一条线遍历完的时间，
      *
      * @return
      */
     private long calcVisibleLineCost() {
-        if (intervalOfAnimCost > 0) {
-            if (maxOfVisible < datas.get(0).size()) {
-                return maxOfAnimCost;
-            }
-            long oneLineCost = intervalOfAnimCost * (datas.get(0).size() - 1);
-            oneLineCost = Math.min(maxOfAnimCost, oneLineCost);
-            return oneLineCost;
-        } else {
-            return 0;
-        }
+        return AnimTiming.calcLineCost(intervalOfAnimCost, maxOfAnimCost, maxOfVisible, dataSize);
     }
 
     private void showWithAnims() {
         if (datas.isEmpty()) return;
-        curAnimLine = 0;
-        startTimeOfAnim = System.currentTimeMillis();
+        startTimeOfAnim = AnimationUtils.currentAnimationTimeMillis();
         int[] suitEdge = findSuitEdgeInVisual();
+        startIndexOfAnim = suitEdge[0];
+        endIndexOfAnim = suitEdge[1];
 
         // 重置所有可见点的percent
-        for (int i = suitEdge[0]; i <= suitEdge[1]; i++) {
-            for (List<Unit> item : datas.values()) {
-                item.get(i).setPercent(0);
+        for (int j = 0; j < datas.size(); j++) {
+            for (int i = suitEdge[0]; i <= suitEdge[1]; i++) {
+                datas.get(j).setPercent(i, 0);
             }
         }
-        startLinesAnimOrderly(suitEdge[0], suitEdge[1]);
-        autoInvalidate();
+        // 之后由onDraw按vsync驱动，直到所有点都完成
+        isAniming = true;
+        invalidate();
     }
 
     /**
-     * 开启自动刷新
+     * 在绘制时按当前时间计算每个参与动画的点的percent：<br>
+     * 每条line比上一条晚calcVisibleLineCost() / percentOfStartNextLineAnim启动，
+     * line内的点在calcVisibleLineCost()内依次匀速启动，
+     * 每个点启动后经过durationOfPointAnim由pointInterpolator从0到1。
+     * @return 是否所有点都已完成
      */
-    private void autoInvalidate() {
-        isAniming = true;
-        invalidate();
-        if (System.currentTimeMillis() - startTimeOfAnim > calcTotalCost()) {
-            isAniming = false;
-            return;
-        }
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                autoInvalidate();
+    private boolean updatePercentsOfAnim() {
+        long elapsed = AnimationUtils.currentAnimationTimeMillis() - startTimeOfAnim;
+        long lineCost = calcVisibleLineCost();
+        boolean isFinished = true;
+        for (int j = 0; j < datas.size(); j++) {
+            Series line = datas.get(j);
+            for (int i = startIndexOfAnim; i <= endIndexOfAnim && i < line.size(); i++) {
+                long startOfPoint = AnimTiming.startOf(lineCost, percentOfStartNextLineAnim, j, i,
+                        startIndexOfAnim, endIndexOfAnim);
+                float percent = calcPercentOfPoint(elapsed - startOfPoint, line.getValue(i));
+                line.setPercent(i, percent);
+                isFinished &= percent == 1;
             }
-        }, 16);
+        }
+        return isFinished;
     }
 
     /**
-     * 间隔指定时间依次启动每条线
+     * @param elapsed   该点启动后经过的时间，<0表示还未启动
+     * @param value     点的值
+     * @return
      */
-    private void startLinesAnimOrderly(final int startIndex, final int endIndex) {
-        startLineAnim(startIndex, endIndex);
-        if (curAnimLine >= datas.size() - 1) return;
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                curAnimLine++;
-                startLinesAnimOrderly(startIndex, endIndex);
-            }
-        }, calcVisibleLineCost() / percentOfStartNextLineAnim);
+    private float calcPercentOfPoint(long elapsed, float value) {
+        float fraction = AnimTiming.fractionOf(elapsed, durationOfPointAnim, value);
+        return fraction == 0 || fraction == 1 ? fraction : pointInterpolator.getInterpolation(fraction);
     }
 
     /**
-     * 依次启动指定label的线的每个可见点的动画；
-     *
-     * @param startIndex
-     * @param endIndex
+     * 加入待追加的队列，并确保主线程中有一次批量处理
      */
-    private void startLineAnim(final int startIndex, final int endIndex) {
-        final List<Unit> line = datas.get(curAnimLine);
-        long duration = calcVisibleLineCost();
-        if (duration > 0) {
-            ValueAnimator animator = ValueAnimator.ofInt(startIndex, endIndex);
-            animator.setDuration(duration);
-            animator.setInterpolator(linearInterpolator);
-            animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    for (int i = startIndex; i <= (Integer) animation.getAnimatedValue(); i++) {
-                        line.get(i).startAnim(pointInterpolator);
-                    }
+    private void enqueueAppend(int lineIndex, float value, String extX, long time) {
+        synchronized (appendLock) {
+            if (pendingCount == pendingValues.length) {
+                int capacity = pendingCount * 2;
+                pendingLines = Arrays.copyOf(pendingLines, capacity);
+                pendingValues = Arrays.copyOf(pendingValues, capacity);
+                pendingExtXs = Arrays.copyOf(pendingExtXs, capacity);
+                pendingTimes = Arrays.copyOf(pendingTimes, capacity);
+            }
+            pendingLines[pendingCount] = lineIndex;
+            pendingValues[pendingCount] = value;
+            pendingExtXs[pendingCount] = extX;
+            pendingTimes[pendingCount] = time;
+            pendingCount++;
+            if (!isAppendScheduled) {
+                isAppendScheduled = true;
+                handler.post(drainAppendsRunnable);
+            }
+        }
+    }
+
+    /**
+     * 在主线程中批量处理追加的数据：<br>
+     * 1. 写入每条line的环形缓冲，并按点数/时间淘汰最旧的点；<br>
+     * 2. 增量更新y轴区间，区间未变化时只计算新点的坐标；<br>
+     * 3. 增量更新maxOffset，并保持当前可见内容不动或跟随最新的点。
+     */
+    private void drainAppends() {
+        int count;
+        synchronized (appendLock) {
+            count = pendingCount;
+            int[] lines = pendingLines;
+            float[] values = pendingValues;
+            String[] extXs = pendingExtXs;
+            long[] times = pendingTimes;
+            pendingLines = drainLines;
+            pendingValues = drainValues;
+            pendingExtXs = drainExtXs;
+            pendingTimes = drainTimes;
+            drainLines = lines;
+            drainValues = values;
+            drainExtXs = extXs;
+            drainTimes = times;
+            pendingCount = 0;
+            isAppendScheduled = false;
+        }
+        if (dataSource != null) {
+            // 数据源模式下数据只来自数据源，追加的数据被丢弃
+            Arrays.fill(drainExtXs, 0, count, null);
+            return;
+        }
+        boolean isFirst = datas.isEmpty();
+        if (isFirst && count > 0) {
+            // 还没有数据时，以默认画笔创建需要的line
+            int lineCount = 0;
+            for (int k = 0; k < count; k++) {
+                lineCount = Math.max(lineCount, drainLines[k] + 1);
+            }
+            paints.clear();
+            paths.clear();
+            for (int j = 0; j < lineCount; j++) {
+                Series line = new Series(maxOfRetainedPoints > 0 ? maxOfRetainedPoints : 0);
+                if (fitVisibleY) {
+                    line.buildMinMaxTree();
                 }
-            });
-            animator.addListener(new AnimatorListenerAdapter() {
-                @Override
-                public void onAnimationEnd(Animator animation) {
-                    for (int i = startIndex; i <= endIndex; i++) {
-                        line.get(i).startAnim(pointInterpolator);
+                datas.add(line);
+                paints.add(buildNewPaint());
+                paths.add(new Path());
+            }
+        }
+        if (datas.isEmpty()) {
+            return;
+        }
+        boolean wasAtEnd = Math.abs(offset) >= maxOffset;
+        if (appendFromOfLines.length < datas.size()) {
+            appendFromOfLines = new int[datas.size()];
+        }
+        int[] sizesBefore = appendFromOfLines;
+        for (int j = 0; j < datas.size(); j++) {
+            // 先记录每条line原有的点数，处理完后再转换为新点的起始索引
+            sizesBefore[j] = datas.get(j).size();
+        }
+        int evicted = 0;
+        boolean needRescan = false;
+        float[] minAndMax = tmpMinAndMax;
+        if (isFirst) {
+            minAndMax[0] = Float.POSITIVE_INFINITY;
+            minAndMax[1] = Float.NEGATIVE_INFINITY;
+        }
+        for (int k = 0; k < count; k++) {
+            if (drainLines[k] >= datas.size()) {
+                drainExtXs[k] = null;
+                continue;
+            }
+            Series line = datas.get(drainLines[k]);
+            float oldest = line.size() > 0 ? line.getValue(0) : 0;
+            int evictedOfLine = line.append(drainValues[k], drainExtXs[k], drainTimes[k], maxOfRetainedPoints);
+            if (evictedOfLine > 0) {
+                // 被淘汰的可能是最值，简单起见，最旧的点不是最值时才跳过重新查找
+                needRescan |= evictedOfLine > 1 || oldest <= minAndMax[0] || oldest >= minAndMax[1];
+                sizesBefore[drainLines[k]] -= evictedOfLine;
+                if (drainLines[k] == 0) {
+                    evicted += evictedOfLine;
+                }
+            }
+            minAndMax[0] = Math.min(minAndMax[0], drainValues[k]);
+            minAndMax[1] = Math.max(minAndMax[1], drainValues[k]);
+            drainExtXs[k] = null;
+        }
+        if (maxAgeOfPoints > 0) {
+            long deadline = SystemClock.elapsedRealtime() - maxAgeOfPoints;
+            for (int j = 0; j < datas.size(); j++) {
+                Series line = datas.get(j);
+                // 至少保留最新的一个点
+                int expired = Math.min(line.countOlderThan(deadline), line.size() - 1);
+                if (expired > 0) {
+                    needRescan = true;
+                    line.evict(expired);
+                    sizesBefore[j] -= expired;
+                    if (j == 0) {
+                        evicted += expired;
                     }
                 }
-            });
-            animator.start();
-            animators.add(animator);
+            }
+        }
+        if (needRescan) {
+            Series.findMinAndMax(datas, minAndMax);
+        }
+        updateDataSize();
+        hitIndex.clear();
+        if (dataSize == 0) {
+            invalidate();
+            return;
+        }
+        if (evicted > 0) {
+            // 索引整体前移，之前的点击和动画都已失效
+            clickIndexs = null;
+            if (isAniming) {
+                cancelAllAnims();
+            }
+        }
+
+        int minOfY = Viewport.getCeil5(Math.min(minAndMax[0], 0));
+        int maxOfY = Viewport.getCeil5(Math.max(minAndMax[1], 0));
+        // fitVisibleY时y轴区间由可见区域决定，在绘制时调整；只有刻度的宽度变化时才需要重新计算区域
+        boolean isRangeChanged = fitVisibleY ? setLabelRangeOfY(minOfY, maxOfY)
+                : (minOfY != minAndMaxOfY[0] || maxOfY != minAndMaxOfY[1]);
+        boolean isOnlyTailChanged = false;
+        if (isFirst || linesArea == null || isRangeChanged) {
+            // y轴区间变化，所有点都需要重新计算
+            minAndMaxOfY[0] = minOfY;
+            minAndMaxOfY[1] = maxOfY;
+            invalidateYBuffer();
+            calcAreas();
+            calcUnitXY();
         } else {
-            for (int i = startIndex; i <= endIndex; i++) {
-                line.get(i).startAnim(pointInterpolator);
+            // 只计算新的点
+            float lastBetween = realBetween;
+            projection.setBetween(calcRealBetween());
+            isOnlyTailChanged = evicted == 0 && lastBetween == realBetween;
+            if (!fitVisibleY) {
+                for (int j = 0; j < datas.size(); j++) {
+                    Series line = datas.get(j);
+                    projection.apply(line, Math.max(0, sizesBefore[j]), line.size());
+                }
+            } else if (evicted > 0) {
+                fitProjectedFrom = fitProjectedTo = -1;
+            }
+            calcMaxOffset();
+        }
+        // 淘汰的点会让剩余的点整体左移，调整offset使可见内容保持不动
+        offset += evicted * realBetween;
+        if (autoFollow && wasAtEnd) {
+            scroller.abortAnimation();
+            offset = -maxOffset;
+        }
+        offset = offset > 0 ? 0 : (Math.abs(offset) > maxOffset) ? -maxOffset : offset;
+        if (isOnlyTailChanged && canUseTiles()) {
+            // 已有的点都没有移动，只重新绘制从最早的新点的前一个点开始的tile
+            int firstNew = Integer.MAX_VALUE;
+            for (int j = 0; j < datas.size(); j++) {
+                firstNew = Math.min(firstNew, sizesBefore[j]);
             }
+            tileCache.invalidateFrom(tileOf(projection.x(Math.max(0, firstNew - 1))));
+        } else {
+            dirtyFlags |= DIRTY_PATHS;
         }
+        invalidate();
     }
 
     /**
@@ -1133,30 +2195,45 @@ public class SuitLines extends View {
      */
     private void reset() {
         invalidateYBuffer();
+        if (pageCache != null) {
+            pageCache.release();
+            pageCache = null;
+        }
+        dataSource = null;
+        if (tileCache != null) {
+            tileCache.clear();
+        }
         offset = 0;
+        pendingScrollX = 0;
+        zoom = 1;
+        pendingZoom = 1;
         realBetween = 0;
         suitEdge = null;
         clickIndexs = null;
+        hitIndex.clear();
         datas.clear();
+        dataSize = 0;
     }
 
+    /**
+     * y轴的缓存在下次drawY时重新绘制，大小不变时复用已有的bitmap
+     */
     private void invalidateYBuffer() {
-        if (yAreaBuffer != null) {
-            yAreaBuffer.recycle();
-            yAreaBuffer = null;
-        }
-        if (yGridBuffer != null) {
-            yGridBuffer.recycle();
-            yGridBuffer = null;
-        }
+        dirtyFlags |= DIRTY_Y_BUFFER;
     }
 
-//    @Override
-//    protected void onDetachedFromWindow() {
-//        super.onDetachedFromWindow();
-//        cancelAllAnims();
-//        reset();
-//    }
+    /**
+     * 只把bitmap放回{@link BitmapPool}供其它图表使用，数据和状态不变，重新attach后在绘制时重新创建
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        BitmapPool.release(yAreaBuffer);
+        yAreaBuffer = null;
+        if (tileCache != null) {
+            tileCache.clear();
+        }
+    }
 
     ///APIs/////////////////////////////////////////////////////////////////////////////////////////
 
@@ -1166,7 +2243,7 @@ public class SuitLines extends View {
      */
     public void setCoverLine(boolean enable) {
         needCoverLine = enable;
-        forceToDraw = true;
+        dirtyFlags |= DIRTY_STYLE;
         postInvalidate();
     }
 
@@ -1177,7 +2254,7 @@ public class SuitLines extends View {
     public void setCoverLine(float withdp) {
         needCoverLine = true;
         coverLinePaint.setStrokeWidth(Util.dip2px(withdp) * 2);
-        forceToDraw = true;
+        dirtyFlags |= DIRTY_STYLE;
         postInvalidate();
     }
 
@@ -1194,6 +2271,7 @@ public class SuitLines extends View {
         }
         if (!datas.isEmpty() && datas.size() == 1) {
             paints.get(0).set(basePaint);
+            dirtyFlags |= DIRTY_STYLE;
             postInvalidate();
         }
     }
@@ -1221,8 +2299,8 @@ public class SuitLines extends View {
         defaultXyColor = color;
         xyPaint.setColor(defaultXyColor);
         if (!datas.isEmpty()) {
+            // x轴每帧直接绘制，lines不受影响
             invalidateYBuffer();
-            forceToDraw = true;
             postInvalidate();
         }
     }
@@ -1234,14 +2312,9 @@ public class SuitLines extends View {
     public void setXySize(float sp) {
         defaultXySize = sp;
         xyPaint.setTextSize(Util.size2sp(defaultXySize, getContext()));
-        if (!datas.isEmpty()) {
-            invalidateYBuffer();
-            calcAreas();
-            calcUnitXY();
-            offset = 0;// fix bug.
-            forceToDraw = true;
-            postInvalidate();
-        }
+        // 区域不变时只重新绘制y轴，offset在重新计算坐标时按比例调整
+        dirtyFlags |= DIRTY_LAYOUT | DIRTY_Y_BUFFER;
+        postInvalidate();
     }
 
 
@@ -1250,24 +2323,28 @@ public class SuitLines extends View {
      * @param lineSize
      */
     public void setLineSize(float lineSize) {
+        if (!paints.isEmpty() && paints.get(0).getStrokeWidth() != lineSize) {
+            // y的映射留出了stroke宽度一半的边距，需要重新计算坐标
+            dirtyFlags |= DIRTY_DATA;
+        }
         basePaint.setStyle(Paint.Style.STROKE);
         basePaint.setStrokeWidth(lineSize);
         // 同时更新当前已存在的paint
         for (int i = 0; i < paints.size(); i++) {
-            forceToDraw = true;
             paints.get(i).setStyle(basePaint.getStyle());
             paints.get(i).setStrokeWidth(lineSize);
         }
+        dirtyFlags |= DIRTY_STYLE;
         postInvalidate();
     }
 
     /**
-     * 指定line类型：CURVE / SEGMENT
+     * 指定line类型：CURVE / SEGMENT / MONOTONE
      * @param lineType  默认CURVE
      */
     public void setLineType(int lineType) {
         this.lineType = lineType;
-        forceToDraw = true;
+        dirtyFlags |= DIRTY_STYLE;
         postInvalidate();
     }
 
@@ -1288,9 +2365,9 @@ public class SuitLines extends View {
         if (!datas.isEmpty()) {
             // 同时更新当前已存在的paint
             for (int i = 0; i < paints.size(); i++) {
-                forceToDraw = true;
                 paints.get(i).setStyle(basePaint.getStyle());
             }
+            dirtyFlags |= DIRTY_STYLE;
             postInvalidate();
         }
     }
@@ -1305,9 +2382,9 @@ public class SuitLines extends View {
         if (!datas.isEmpty()) {
             // 同时更新当前已存在的paint
             for (int i = 0; i < paints.size(); i++) {
-                forceToDraw = true;
                 paints.get(i).setPathEffect(basePaint.getPathEffect());
             }
+            dirtyFlags |= DIRTY_STYLE;
             postInvalidate();
         }
     }
@@ -1348,6 +2425,170 @@ public class SuitLines extends View {
         postInvalidate();
     }
 
+    /**
+     * 是否按可见区域中的点来调整y轴区间，开启后滚动到数据变化较小的区域时，line不会被压平；<br>
+     * 每条line会额外建立一个区间最值索引，使每次滚动时查找最值的耗费为O(log n)
+     * @param enable    默认为false
+     */
+    public void setFitVisibleY(boolean enable) {
+        if (fitVisibleY == enable) return;
+        fitVisibleY = enable;
+        for (int j = 0; j < datas.size(); j++) {
+            if (enable) {
+                datas.get(j).buildMinMaxTree();
+            } else {
+                datas.get(j).releaseMinMaxTree();
+            }
+        }
+        if (dataSource == null) {
+            // 恢复为所有数据的区间，或者等待绘制时按可见区域调整；开启时y轴区域仍按所有数据的区间确定宽度
+            if (enable) {
+                System.arraycopy(minAndMaxOfY, 0, labelRangeOfY, 0, 2);
+            }
+            dirtyFlags |= DIRTY_RANGE | DIRTY_DATA | DIRTY_LAYOUT;
+        }
+        dirtyFlags |= DIRTY_PATHS;
+        postInvalidate();
+    }
+
+    /**
+     * 是否将lines层按固定宽度的tile缓存为bitmap，开启后滚动时只需要绘制已缓存的bitmap，
+     * 只有填充数据、改变样式或大小时才重新绘制；动画中以及开启fitVisibleY时不使用缓存
+     * @param maxBytes  所有tile最多占用的内存，超出时淘汰最久未使用的tile，<=0表示关闭
+     */
+    public void setTileCache(int maxBytes) {
+        if (tileCache != null) {
+            tileCache.release();
+            tileCache = null;
+        }
+        if (maxBytes > 0) {
+            tileCache = new TileCache(maxBytes);
+        }
+        dirtyFlags |= DIRTY_PATHS;
+        postInvalidate();
+    }
+
+    /**
+     * 可见区域中的点比像素列还多时，是否先按像素列聚合(M4)再连接，
+     * 开启后绘制的耗费只与宽度有关，而与可见点数无关
+     * @param enable    默认为false
+     */
+    public void setDownSampling(boolean enable) {
+        needDownSampling = enable;
+        dirtyFlags |= DIRTY_STYLE;
+        postInvalidate();
+    }
+
+
+    /**
+     * 以数据源代替feed：图表只查询可见区域附近的点，按页缓存并在后台加载，
+     * 不需要事先将所有数据转化为Unit；每条line使用默认的画笔，y轴区间按可见区域调整。<br>
+     * 之后调用feed或append会替换掉数据源
+     *
+     * @param source    为null时清空图表
+     * @param maxPages  最多缓存的页数，每页1024个点
+     */
+    public void setDataSource(final DataSource source, final int maxPages) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                applyDataSource(source, Math.max(1, maxPages));
+            }
+        });
+    }
+
+    /**
+     * 最多缓存64页
+     *
+     * @param source
+     */
+    public void setDataSource(DataSource source) {
+        setDataSource(source, 64);
+    }
+
+    /**
+     * 数据源的内容或点数变化后调用，已缓存的页全部重新加载；
+     * 若开启了autoFollow并且当前位于最右边，则跟随最新的点，否则保持当前位置
+     */
+    public void notifyDataSourceChanged() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (dataSource == null) return;
+                float lastOffset = offset;
+                boolean wasAtEnd = Math.abs(offset) >= maxOffset;
+                applyDataSource(dataSource, maxPagesOfSource);
+                offset = autoFollow && wasAtEnd ? -maxOffset : lastOffset;
+                offset = offset > 0 ? 0 : (Math.abs(offset) > maxOffset) ? -maxOffset : offset;
+            }
+        });
+    }
+
+    /**
+     * 长按后拖动查找：拖动时不滚动，手指的位置每帧处理一次，
+     * 所在列中y最接近的line或所在的列变化时回调，同时显示提示；松开后提示逐渐消失
+     * @param listener  为null时关闭
+     */
+    public void setOnScrubListener(OnScrubListener listener) {
+        onScrubListener = listener;
+    }
+
+    /**
+     * 记录每帧中各阶段的耗时和计数，以及每次feed的耗时，
+     * 同时输出对应的android.os.Trace区间（API 18及以上）；不设置时没有任何额外的耗费
+     * @param listener  为null时关闭
+     */
+    public void setMetricsListener(MetricsListener listener) {
+        metricsListener = listener;
+        frameMetrics = listener == null ? null : new FrameMetrics();
+    }
+
+    /**
+     * 是否可以双指缩放：缩放改变两点之间的距离，缩放中心处的点保持不动；
+     * 最多缩小到所有点都可见，最多放大到只有两个点可见，重新填充数据后恢复。<br>
+     * 缩小到每个像素列有多个点时，建议同时开启{@link #setDownSampling(boolean)}，
+     * 填充时已开启的话会在后台为每条line建立多级聚合，之后每帧的耗费与缩放程度无关
+     * @param enable    默认为false
+     */
+    public void setZoomEnabled(boolean enable) {
+        if (!enable) {
+            scaleDetector = null;
+            isZooming = false;
+            return;
+        }
+        if (scaleDetector != null) {
+            return;
+        }
+        scaleDetector = new ScaleGestureDetector(getContext(), new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScaleBegin(ScaleGestureDetector detector) {
+                if (isScrubbing || datas.isEmpty()) {
+                    return false;
+                }
+                handler.removeCallbacks(startScrubRunnable);
+                isZooming = hasZoomed = true;
+                pendingScrollX = 0;
+                return true;
+            }
+
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                // 一帧内的多次缩放只累积，在下一帧统一处理
+                pendingZoom *= detector.getScaleFactor();
+                zoomFocusX = detector.getFocusX();
+                invalidate();
+                return true;
+            }
+
+            @Override
+            public void onScaleEnd(ScaleGestureDetector detector) {
+                isZooming = false;
+                // 重新绘制tile
+                dirtyFlags |= DIRTY_PATHS;
+                invalidate();
+            }
+        });
+    }
 
     /**
      * 本方式仅支持一条线，若需要支持多条线，请采用Builder方式
@@ -1356,8 +2597,7 @@ public class SuitLines extends View {
      */
     public void feedWithAnim(List<Unit> line) {
         if (line == null || line.isEmpty()) return;
-        final Map<Integer, List<Unit>> entry = new HashMap<>();
-        entry.put(0, line);
+        final List<Series> entry = Arrays.asList(Series.from(line));
         handler.post(new Runnable() {
             @Override
             public void run() {
@@ -1373,8 +2613,7 @@ public class SuitLines extends View {
      */
     public void feed(List<Unit> line) {
         if (line == null || line.isEmpty()) return;
-        final Map<Integer, List<Unit>> entry = new HashMap<>();
-        entry.put(0, line);
+        final List<Series> entry = Arrays.asList(Series.from(line));
         handler.post(new Runnable() {
             @Override
             public void run() {
@@ -1384,7 +2623,8 @@ public class SuitLines extends View {
     }
 
     public void anim() {
-        if (datas.isEmpty()) return;
+        // 数据源模式下窗口会随时重新填充，不支持整体动画
+        if (datas.isEmpty() || dataSource != null) return;
         handler.post(new Runnable() {
             @Override
             public void run() {
@@ -1398,8 +2638,136 @@ public class SuitLines extends View {
         handler.post(runnable);
     }
 
+    /**
+     * 向指定的line末尾追加一个点，可在任意线程调用，同一帧内的多次追加会被合并处理；<br>
+     * 多条线时，需要保证每条line追加的次数相同；没有数据时，lineIndex决定了创建几条line
+     *
+     * @param lineIndex line的索引，从0开始
+     * @param value     点的值
+     * @param extX      点的额外信息（可选，x轴）
+     */
+    public void append(int lineIndex, float value, String extX) {
+        if (lineIndex < 0) {
+            throw new IllegalArgumentException("无效参数lineIndex");
+        }
+        enqueueAppend(lineIndex, value, extX, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * 批量追加：为每条line各追加一个点，values的索引即line的索引
+     *
+     * @param values    每条line新的值
+     * @param extX      这组点共同的额外信息（可选，x轴）
+     */
+    public void append(float[] values, String extX) {
+        if (values == null || values.length == 0) return;
+        long time = SystemClock.elapsedRealtime();
+        for (int j = 0; j < values.length; j++) {
+            enqueueAppend(j, values[j], extX, time);
+        }
+    }
+
+    /**
+     * 指定追加数据时的淘汰策略，对之后的追加生效
+     *
+     * @param maxPoints     每条line最多保留的点数，<=0表示不限制
+     * @param maxAgeMillis  每个点最多保留的时间，<=0表示不限制
+     */
+    public void setRetention(int maxPoints, long maxAgeMillis) {
+        maxOfRetainedPoints = maxPoints;
+        maxAgeOfPoints = maxAgeMillis;
+    }
+
+    /**
+     * 追加数据时，若当前位于最右边，是否自动滚动以保持最新的点可见
+     *
+     * @param enable 默认为false
+     */
+    public void setAutoFollow(boolean enable) {
+        autoFollow = enable;
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * 按需提供数据，类似Adapter：图表只查询可见区域附近的点，见{@link #setDataSource(DataSource)}；<br>
+     * getLineCount和getCount在主线程中调用，getValue和getLabel在后台线程中按页调用
+     */
+    public interface DataSource {
+        /**
+         * @return line的数量
+         */
+        int getLineCount();
+
+        /**
+         * @return 每条line的点数
+         */
+        int getCount();
+
+        /**
+         * @param line  line的索引，从0开始
+         * @param index 点的索引，从0开始
+         * @return 点的值
+         */
+        float getValue(int line, int index);
+
+        /**
+         * @param index 点的索引，从0开始
+         * @return 点的额外信息（x轴），可为null
+         */
+        String getLabel(int index);
+    }
+
+    /**
+     * 可以直接得到区间最值的数据源，例如{@link SeriesFile}：
+     * 按可见区域调整y轴时从数据源查询，不需要遍历已加载的窗口，还未加载的页也参与计算，y轴不会随加载跳动
+     */
+    public interface RangedDataSource extends DataSource {
+        /**
+         * 在主线程中调用，应该比逐点遍历快得多
+         * @param line      line的索引，从0开始
+         * @param from      第一个点的索引
+         * @param to        最后一个点的索引+1
+         * @param minAndMax 0为最小值，1为最大值，结果与已有的值合并，NaN不参与比较
+         */
+        void findMinAndMax(int line, int from, int to, float[] minAndMax);
+    }
+
+    /**
+     * 拖动查找的回调，见{@link #setOnScrubListener(OnScrubListener)}，都在主线程中调用
+     */
+    public interface OnScrubListener {
+        /**
+         * @param index 点的索引，从0开始
+         * @param line  line的索引，从0开始
+         */
+        void onScrub(int index, int line);
+
+        /**
+         * 手指松开或数据被替换
+         */
+        void onScrubEnd();
+    }
+
+    /**
+     * 性能数据的回调，见{@link #setMetricsListener(MetricsListener)}，都在主线程中调用
+     */
+    public interface MetricsListener {
+        /**
+         * 每帧绘制完成后
+         * @param metrics   只在回调中有效，之后会被下一帧复用
+         */
+        void onFrame(FrameMetrics metrics);
+
+        /**
+         * feed的数据开始显示时
+         * @param prepareNanos  在后台线程中计算的耗时
+         * @param publishNanos  在主线程中替换数据的耗时
+         * @param count         每条line的点数
+         */
+        void onFeed(long prepareNanos, long publishNanos, int count);
+    }
+
     // 多条线的情况应该采用该构建方式
     public static class LineBuilder {
         private int curIndex;
@@ -1436,16 +2804,18 @@ public class SuitLines extends View {
          */
         public void build(final SuitLines suitLines, final boolean needAnim) {
             final List<Paint> tmpPaints = new ArrayList<>();
+            final List<Series> entry = new ArrayList<>();
             for (int i = 0; i < colors.size(); i++) {
                 Paint paint = suitLines.buildNewPaint();
                 paint.setColor(colors.get(0)[0]);
                 paint.setShader(suitLines.buildPaintColor(colors.get(i)));
                 tmpPaints.add(i, paint);
+                entry.add(i, Series.from(datas.get(i)));
             }
             suitLines.postAction(new Runnable() {
                 @Override
                 public void run() {
-                    suitLines.feedInternal(datas, tmpPaints, needAnim);
+                    suitLines.feedInternal(entry, tmpPaints, needAnim);
                 }
             });
         }
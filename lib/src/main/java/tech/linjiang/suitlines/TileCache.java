@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * lines层按x方向切分为固定宽度的tile，每个tile绘制一次后缓存为bitmap，
+ * 滚动时只需要按offset直接绘制可见的tile。<br>
+ * 第k个tile覆盖的x区间为[linesArea.left + k * TILE_WIDTH, linesArea.left + (k + 1) * TILE_WIDTH)；
+ * 按占用的内存淘汰最久未使用的tile，被淘汰的bitmap放回{@link BitmapPool}，当前帧结束后用于绘制之后的tile或其它缓存；
+ * 当前帧中已经绘制过的tile不会被淘汰，否则canvas中记录的绘制会引用被复用的bitmap，
+ * 预算不足一屏时允许暂时超出，在下一帧开始时再淘汰。<br>
+ * 缓存的tile数量很少，直接按列表查找，使滚动时的查找不需要装箱key，也就没有任何对象分配。<br>
+ * 只在主线程中使用。
+ */
+class TileCache {
+
+    static final int TILE_WIDTH = 256;
+
+    private final int maxBytes;
+    private int bytes;
+    private final List<Tile> tiles = new ArrayList<>();
+    /**
+     * 每次访问递增，用于找到最久未使用的tile
+     */
+    private long clock;
+    /**
+     * 每帧递增，见{@link #beginFrame()}
+     */
+    private int frame;
+
+    /**
+     * @param maxBytes 所有tile最多占用的内存
+     */
+    TileCache(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 在每帧绘制tile之前调用，之前的帧中使用过的tile可以被淘汰
+     */
+    void beginFrame() {
+        frame++;
+        trim();
+    }
+
+    Bitmap get(int index) {
+        for (int i = 0; i < tiles.size(); i++) {
+            Tile tile = tiles.get(i);
+            if (tile.index == index) {
+                tile.lastUsed = ++clock;
+                tile.lastFrame = frame;
+                return tile.bitmap;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 得到一个透明的bitmap用于绘制新的tile，绘制完成后通过{@link #put(int, Bitmap)}放入
+     * @param width
+     * @param height
+     * @return
+     */
+    Bitmap obtain(int width, int height) {
+        return BitmapPool.obtain(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    void put(int index, Bitmap bitmap) {
+        for (int i = 0; i < tiles.size(); i++) {
+            if (tiles.get(i).index == index) {
+                remove(i);
+                break;
+            }
+        }
+        Tile tile = new Tile();
+        tile.index = index;
+        tile.bitmap = bitmap;
+        tile.lastUsed = ++clock;
+        tile.lastFrame = frame;
+        tiles.add(tile);
+        bytes += bitmap.getByteCount();
+        trim();
+    }
+
+    /**
+     * 淘汰最久未使用的tile直到不超出预算，当前帧中使用过的tile除外
+     */
+    private void trim() {
+        while (bytes > maxBytes) {
+            int eldest = -1;
+            for (int i = 0; i < tiles.size(); i++) {
+                Tile tile = tiles.get(i);
+                if (tile.lastFrame == frame) {
+                    continue;
+                }
+                if (eldest == -1 || tile.lastUsed < tiles.get(eldest).lastUsed) {
+                    eldest = i;
+                }
+            }
+            if (eldest == -1) {
+                break;
+            }
+            remove(eldest);
+        }
+    }
+
+    /**
+     * 移除第index个及之后的tile，用于追加数据时只重新绘制末尾
+     * @param index
+     */
+    void invalidateFrom(int index) {
+        for (int i = tiles.size() - 1; i >= 0; i--) {
+            if (tiles.get(i).index >= index) {
+                remove(i);
+            }
+        }
+    }
+
+    /**
+     * 数据、样式或大小变化时移除所有tile
+     */
+    void clear() {
+        for (int i = tiles.size() - 1; i >= 0; i--) {
+            remove(i);
+        }
+    }
+
+    /**
+     * 移除所有tile，bitmap放回{@link BitmapPool}
+     */
+    void release() {
+        clear();
+    }
+
+    private void remove(int position) {
+        Tile tile = tiles.remove(position);
+        bytes -= tile.bitmap.getByteCount();
+        BitmapPool.release(tile.bitmap);
+    }
+
+    private static class Tile {
+        int index;
+        Bitmap bitmap;
+        long lastUsed;
+        int lastFrame;
+    }
+}
@@ -23,9 +23,12 @@ import android.graphics.LinearGradient;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.RectF;
+import android.animation.ValueAnimator;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Trace;
 import android.util.TypedValue;
+import android.view.View;
 import android.widget.EdgeEffect;
 
 import java.lang.reflect.Field;
@@ -35,14 +38,10 @@ import java.lang.reflect.Field;
  */
 class Util {
 
-    static int getCeil5(float num) {
-        boolean isNegative = num < 0;
-        return (((int) ((isNegative ? -num : num) + 4.9f)) / 5 * 5) * (isNegative ? -1 : 1);
-    }
-
     static float calcTextSuitBaseY(RectF rectF, Paint paint) {
+        // 与getFontMetrics()的结果相同，但不会每次创建FontMetrics
         return rectF.top + rectF.height() / 2 -
-                (paint.getFontMetrics().ascent + paint.getFontMetrics().descent) / 2;
+                (paint.ascent() + paint.descent()) / 2;
     }
 
     static float size2sp(float sp, Context context) {
@@ -79,6 +78,34 @@ class Util {
         }
     }
 
+    /**
+     * 在下一次vsync时重新绘制；API 16以下没有vsync回调，按动画的帧间隔延时
+     * @param view
+     */
+    static void postInvalidateOnAnimation(View view) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            view.postInvalidateOnAnimation();
+        } else {
+            view.postInvalidateDelayed(ValueAnimator.getFrameDelay());
+        }
+    }
+
+    /**
+     * API 18以下没有Trace，直接忽略
+     * @param name
+     */
+    static void beginTrace(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(name);
+        }
+    }
+
+    static void endTrace() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
     static int tryGetStartColorOfLinearGradient(LinearGradient gradient) {
         try {
             Field field = LinearGradient.class.getDeclaredField("mColors");
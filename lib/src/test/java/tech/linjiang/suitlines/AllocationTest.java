@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * 稳定状态下（数据已填充、各种缓存已创建）的滚动、fling和点击提示中，
+ * computeScroll、draw以及触摸事件的分发不应该分配任何对象。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25,
+        shadows = {ShadowRecordingPath.class, ShadowQuietView.class, ShadowQuietVelocityTracker.class})
+public class AllocationTest {
+
+    @Test
+    public void scrollFlingAndTapWithoutAllocation() {
+        ChartDriver driver = new ChartDriver();
+        driver.feed(ChartDriver.waves(3, 2000), false);
+        driver.frames(2);
+        float[] point = driver.findPoint();
+        assertNotNull("没有找到可以点击的点", point);
+        // 预热：走一遍同样的脚本，让需要的对象、缓存和类都准备好
+        script(driver, point);
+
+        DrawCost cost = new DrawCost();
+        driver.record(cost);
+        script(driver, point);
+        assertEquals(cost.getAllocatingFrameCount() + "/" + cost.getFrameCount() + "帧中分配了对象，单帧最多"
+                        + cost.getMaxOfFrame().get(DrawCost.ALLOCATED_BYTES) + "字节",
+                0, cost.getAllocatingFrameCount());
+    }
+
+    private static void script(ChartDriver driver, float[] point) {
+        driver.drag(700, 500, 4);
+        driver.frames(30);
+        driver.drag(500, 700, 4);
+        driver.frames(30);
+        driver.drag(900, 300, 6);
+        driver.frames(120);
+        driver.drag(300, 900, 6);
+        driver.frames(120);
+        driver.tap(point[0], point[1]);
+        driver.frames(60);
+    }
+}
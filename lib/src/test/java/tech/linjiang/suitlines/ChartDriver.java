@@ -0,0 +1,229 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在JVM中驱动SuitLines：固定尺寸布局，每帧依次调用computeScroll、draw和onDraw，然后时钟前进一帧；
+ * 触摸事件按脚本生成并直接分发给图表。<br>
+ * 每帧的绘制记录在{@link RecordingCanvas}中，这一帧的绘制以及之前分发的触摸事件中分配的字节数
+ * 通过当前线程的分配计数得到，事件本身的创建和回收不计算在内。
+ */
+class ChartDriver {
+
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 600;
+    static final long FRAME_MILLIS = 16;
+    private static final long FEED_TIMEOUT_MILLIS = 10000;
+    /**
+     * 查找可点击的点时的步长，小于点击的容差
+     */
+    private static final float SEARCH_STEP = 6;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    final SuitLines chart;
+    final RecordingCanvas canvas = new RecordingCanvas();
+    /**
+     * 读取一次分配计数本身分配的字节数
+     */
+    private final long overheadOfCounting;
+    private long allocatedBeforeFrame;
+    private long downTime;
+    private int feedCount;
+    private DrawCost recording;
+
+    ChartDriver() {
+        this(null);
+    }
+
+    /**
+     * @param attrs 布局中的属性，例如maxOfVisible
+     */
+    ChartDriver(AttributeSet attrs) {
+        chart = new SuitLines(RuntimeEnvironment.application, attrs);
+        chart.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        chart.layout(0, 0, WIDTH, HEIGHT);
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 16; i++) {
+            long start = allocatedBytes();
+            overhead = Math.min(overhead, allocatedBytes() - start);
+        }
+        overheadOfCounting = overhead;
+    }
+
+    /**
+     * @param lineCount
+     * @param count     每条line的点数
+     * @return 正弦波加上每条line不同的偏移，每个点都有x轴的文本
+     */
+    static List<List<Unit>> waves(int lineCount, int count) {
+        List<List<Unit>> lines = new ArrayList<>();
+        for (int j = 0; j < lineCount; j++) {
+            List<Unit> units = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                units.add(new Unit((float) (50 + 40 * Math.sin(i / 7.0 + j)) + j * 10, String.valueOf(i)));
+            }
+            lines.add(units);
+        }
+        return lines;
+    }
+
+    /**
+     * 填充数据并等待后台准备完成、在主线程中替换
+     * @param lines
+     * @param needAnim  替换后是否开始填充动画
+     */
+    void feed(List<List<Unit>> lines, boolean needAnim) {
+        SuitLines.LineBuilder builder = new SuitLines.LineBuilder();
+        for (int j = 0; j < lines.size(); j++) {
+            builder.add(lines.get(j), 0xff000000 | (0x404040 * (j + 1)));
+        }
+        int expected = feedCount + 1;
+        chart.setMetricsListener(new SuitLines.MetricsListener() {
+            @Override
+            public void onFrame(FrameMetrics metrics) {
+            }
+
+            @Override
+            public void onFeed(long prepareNanos, long publishNanos, int count) {
+                feedCount++;
+            }
+        });
+        builder.build(chart, needAnim);
+        long deadline = System.currentTimeMillis() + FEED_TIMEOUT_MILLIS;
+        while (feedCount < expected) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("feed在" + FEED_TIMEOUT_MILLIS + "ms内没有完成");
+            }
+            ShadowLooper.runUiThreadTasks();
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+        // 计数时不需要各阶段的耗时
+        chart.setMetricsListener(null);
+    }
+
+    /**
+     * 之后的每一帧都记录到cost中，为null时不再记录
+     */
+    void record(DrawCost cost) {
+        recording = cost;
+    }
+
+    void frame() {
+        canvas.beginFrame();
+        long start = allocatedBytes();
+        chart.computeScroll();
+        chart.draw(canvas);
+        // Robolectric中View.draw只绘制背景，不会调用onDraw
+        chart.onDraw(canvas);
+        long allocated = allocatedBytes() - start - overheadOfCounting + allocatedBeforeFrame;
+        allocatedBeforeFrame = 0;
+        if (recording != null) {
+            recording.addFrame(canvas, allocated);
+        }
+        ShadowLooper.idleMainLooper(FRAME_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    void frames(int count) {
+        for (int i = 0; i < count; i++) {
+            frame();
+        }
+    }
+
+    /**
+     * 水平拖动，每帧一次MOVE，松开后由图表决定是否fling
+     * @param fromX
+     * @param toX
+     * @param frames    拖动的帧数
+     */
+    void drag(float fromX, float toX, int frames) {
+        float y = HEIGHT / 2;
+        touch(MotionEvent.ACTION_DOWN, fromX, y);
+        frame();
+        for (int i = 1; i <= frames; i++) {
+            touch(MotionEvent.ACTION_MOVE, fromX + (toX - fromX) * i / frames, y);
+            frame();
+        }
+        touch(MotionEvent.ACTION_UP, toX, y);
+        frame();
+    }
+
+    void tap(float x, float y) {
+        touch(MotionEvent.ACTION_DOWN, x, y);
+        ShadowLooper.idleMainLooper(FRAME_MILLIS, TimeUnit.MILLISECONDS);
+        touch(MotionEvent.ACTION_UP, x, y);
+        frame();
+    }
+
+    /**
+     * 在图表中间附近逐行点击，直到某次点击显示了提示（这一帧绘制的文本变多），这些帧不会被记录
+     * @return 命中的点击位置{x, y}，没有命中时为null
+     */
+    float[] findPoint() {
+        DrawCost bak = recording;
+        recording = null;
+        frame();
+        long textsWithoutHint = canvas.get(RecordingCanvas.DRAW_TEXT);
+        float[] point = null;
+        search:
+        for (float x = WIDTH / 2; x < WIDTH / 2 + SEARCH_STEP * 8; x += SEARCH_STEP) {
+            for (float y = 0; y < HEIGHT; y += SEARCH_STEP) {
+                tap(x, y);
+                if (canvas.get(RecordingCanvas.DRAW_TEXT) > textsWithoutHint) {
+                    point = new float[]{x, y};
+                    break search;
+                }
+            }
+        }
+        recording = bak;
+        return point;
+    }
+
+    private void touch(int action, float x, float y) {
+        long now = SystemClock.uptimeMillis();
+        if (action == MotionEvent.ACTION_DOWN) {
+            downTime = now;
+        }
+        MotionEvent event = MotionEvent.obtain(downTime, now, action, x, y, 0);
+        long start = allocatedBytes();
+        chart.dispatchTouchEvent(event);
+        allocatedBeforeFrame += allocatedBytes() - start - overheadOfCounting;
+        event.recycle();
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
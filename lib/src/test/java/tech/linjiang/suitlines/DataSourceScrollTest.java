@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import android.util.AttributeSet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 开启聚合、每个像素列有多个点时，滚动经过只加载了一部分的数据源：
+ * 可见区间的首尾经常落在未加载的页中，页的边界也经常落在像素列中间。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25,
+        shadows = {ShadowRecordingPath.class, ShadowQuietView.class, ShadowQuietVelocityTracker.class})
+public class DataSourceScrollTest {
+
+    private static final int COUNT = 32 * PageCache.PAGE_SIZE;
+
+    @Test
+    public void scrollAcrossUnloadedPagesWhileDownSampling() throws InterruptedException {
+        // 约0.1像素一个点，每个像素列有约10个点
+        AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.maxOfVisible, "10000")
+                .build();
+        ChartDriver driver = new ChartDriver(attrs);
+        driver.chart.setDownSampling(true);
+        driver.chart.setDataSource(new GappedSource());
+        DrawCost cost = new DrawCost();
+        driver.record(cost);
+        for (int i = 0; i < 12; i++) {
+            driver.drag(1000, 100, 6);
+            for (int k = 0; k < 30; k++) {
+                driver.frame();
+                // 让后台的加载有机会在两帧之间完成
+                Thread.sleep(1);
+            }
+        }
+        assertTrue(cost.getMaxOfFrame().get("drawPath") > 0);
+    }
+
+    /**
+     * 奇数页总是加载失败，保持为未加载
+     */
+    private static class GappedSource implements SuitLines.DataSource {
+
+        @Override
+        public int getLineCount() {
+            return 2;
+        }
+
+        @Override
+        public int getCount() {
+            return COUNT;
+        }
+
+        @Override
+        public float getValue(int line, int index) {
+            if ((index / PageCache.PAGE_SIZE) % 2 == 1) {
+                throw new IllegalStateException("第" + index / PageCache.PAGE_SIZE + "页不可用");
+            }
+            return (float) (50 + 40 * Math.sin(index / 3.0 + line)) + (index % 2 == 0 ? 5 : -5);
+        }
+
+        @Override
+        public String getLabel(int index) {
+            return null;
+        }
+    }
+}
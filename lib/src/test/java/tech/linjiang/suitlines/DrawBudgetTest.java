@@ -0,0 +1,218 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * 按脚本驱动图表（填充、动画、fling、点击、改变样式），记录每帧的绘制代价，
+ * 与draw-budgets.properties中的预算比较，任何一项超出时失败。<br>
+ * 预算是每帧的上限，绘制更多的内容或者在稳定状态下分配对象都会超出；
+ * 有意增加绘制时，按失败信息中本次的值更新预算并说明原因。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25,
+        shadows = {ShadowRecordingPath.class, ShadowQuietView.class, ShadowQuietVelocityTracker.class})
+public class DrawBudgetTest {
+
+    private static final String BUDGETS = "draw-budgets.properties";
+    private static Properties budgets;
+    private static boolean warmedUp;
+
+    @BeforeClass
+    public static void loadBudgets() throws IOException {
+        InputStream in = DrawBudgetTest.class.getClassLoader().getResourceAsStream(BUDGETS);
+        assertNotNull("缺少" + BUDGETS, in);
+        budgets = new Properties();
+        try {
+            budgets.load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 首次加载类、初始化Robolectric中的资源时的分配与绘制无关，先不记录地运行一遍所有场景
+     */
+    @Before
+    public void warmUp() {
+        if (warmedUp) {
+            return;
+        }
+        warmedUp = true;
+        feed(new ChartDriver());
+        animation(new ChartDriver());
+        fling(new ChartDriver());
+        flingWithTiles(new ChartDriver());
+        tap(new ChartDriver());
+        styleChange(new ChartDriver());
+    }
+
+    @Test
+    public void feed() {
+        assertWithinBudget("feed", feed(new ChartDriver()));
+    }
+
+    @Test
+    public void animation() {
+        assertWithinBudget("animation", animation(new ChartDriver()));
+    }
+
+    @Test
+    public void fling() {
+        assertWithinBudget("fling", fling(new ChartDriver()));
+    }
+
+    @Test
+    public void flingWithTiles() {
+        assertWithinBudget("flingWithTiles", flingWithTiles(new ChartDriver()));
+    }
+
+    @Test
+    public void tap() {
+        assertWithinBudget("tap", tap(new ChartDriver()));
+    }
+
+    @Test
+    public void styleChange() {
+        assertWithinBudget("styleChange", styleChange(new ChartDriver()));
+    }
+
+    /**
+     * 填充后的第一帧（计算坐标、生成y轴缓存）以及之后的静止帧
+     */
+    private static DrawCost feed(ChartDriver driver) {
+        DrawCost cost = new DrawCost();
+        driver.feed(ChartDriver.waves(3, 200), false);
+        driver.record(cost);
+        driver.frames(10);
+        return cost;
+    }
+
+    /**
+     * 填充动画的每一帧都重新连接path
+     */
+    private static DrawCost animation(ChartDriver driver) {
+        DrawCost cost = new DrawCost();
+        driver.feed(ChartDriver.waves(3, 200), true);
+        driver.record(cost);
+        driver.frames(120);
+        return cost;
+    }
+
+    /**
+     * 拖动后fling经过较长的数据，直到停止并显示边缘效果
+     */
+    private static DrawCost fling(ChartDriver driver) {
+        driver.feed(ChartDriver.waves(3, 2000), false);
+        driver.frames(2);
+        DrawCost cost = new DrawCost();
+        driver.record(cost);
+        driver.drag(900, 300, 6);
+        driver.frames(120);
+        return cost;
+    }
+
+    /**
+     * 与fling相同，但lines层从tile缓存中绘制
+     */
+    private static DrawCost flingWithTiles(ChartDriver driver) {
+        driver.chart.setTileCache(8 * 1024 * 1024);
+        driver.feed(ChartDriver.waves(3, 2000), false);
+        driver.frames(2);
+        DrawCost cost = new DrawCost();
+        driver.record(cost);
+        driver.drag(900, 300, 6);
+        driver.frames(120);
+        return cost;
+    }
+
+    /**
+     * 点击某个点后显示提示，直到提示消失
+     */
+    private static DrawCost tap(ChartDriver driver) {
+        driver.feed(ChartDriver.waves(2, 100), false);
+        driver.frames(2);
+        float[] point = driver.findPoint();
+        assertNotNull("没有找到可以点击的点", point);
+        // 等待查找时的提示消失
+        driver.frames(120);
+        DrawCost cost = new DrawCost();
+        driver.record(cost);
+        driver.tap(point[0], point[1]);
+        driver.frames(60);
+        return cost;
+    }
+
+    /**
+     * 依次改变线型、形态、风格、颜色、大小以及辅助线，每次改变后绘制两帧
+     */
+    private static DrawCost styleChange(ChartDriver driver) {
+        driver.feed(ChartDriver.waves(3, 200), false);
+        driver.frames(2);
+        DrawCost cost = new DrawCost();
+        driver.record(cost);
+        driver.chart.setLineType(SuitLines.SEGMENT);
+        driver.frames(2);
+        driver.chart.setLineType(SuitLines.MONOTONE);
+        driver.frames(2);
+        driver.chart.setLineForm(true);
+        driver.frames(2);
+        driver.chart.setCoverLine(true);
+        driver.frames(2);
+        driver.chart.setLineForm(false);
+        driver.chart.setLineStyle(SuitLines.DASHED);
+        driver.frames(2);
+        driver.chart.setXyColor(0xff336699);
+        driver.frames(2);
+        driver.chart.setLineSize(8);
+        driver.frames(2);
+        driver.chart.setShowYGrid(true);
+        driver.frames(2);
+        return cost;
+    }
+
+    private static void assertWithinBudget(String scenario, DrawCost cost) {
+        StringBuilder failures = new StringBuilder();
+        for (Map.Entry<String, Long> entry : cost.getMaxOfFrame().entrySet()) {
+            String key = scenario + "." + entry.getKey();
+            String budget = budgets.getProperty(key);
+            if (budget == null) {
+                failures.append("\n  缺少预算").append(key).append("，本次为").append(entry.getValue());
+            } else if (entry.getValue() > Long.parseLong(budget.trim())) {
+                failures.append("\n  ").append(key).append("为").append(entry.getValue())
+                        .append("，超出预算").append(budget.trim());
+            }
+        }
+        if (failures.length() > 0) {
+            fail(scenario + "（" + cost.getFrameCount() + "帧）中单帧的绘制代价超出预算：" + failures);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一个场景中每帧的绘制代价，每项取所有帧中的最大值，
+ * 名称与{@link RecordingCanvas#NAMES}相同，另外ALLOCATED_BYTES是一帧中分配的字节数。
+ */
+class DrawCost {
+
+    static final String ALLOCATED_BYTES = "allocatedBytes";
+
+    private final Map<String, Long> maxOfFrame = new LinkedHashMap<>();
+    private int frameCount;
+    private int allocatingFrameCount;
+
+    DrawCost() {
+        for (String name : RecordingCanvas.NAMES) {
+            maxOfFrame.put(name, 0L);
+        }
+        maxOfFrame.put(ALLOCATED_BYTES, 0L);
+    }
+
+    void addFrame(RecordingCanvas canvas, long allocatedBytes) {
+        frameCount++;
+        for (int i = 0; i < RecordingCanvas.NAMES.length; i++) {
+            update(RecordingCanvas.NAMES[i], canvas.get(i));
+        }
+        update(ALLOCATED_BYTES, allocatedBytes);
+        if (allocatedBytes > 0) {
+            allocatingFrameCount++;
+        }
+    }
+
+    private void update(String name, long value) {
+        if (value > maxOfFrame.get(name)) {
+            maxOfFrame.put(name, value);
+        }
+    }
+
+    int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return 分配了对象的帧数
+     */
+    int getAllocatingFrameCount() {
+        return allocatingFrameCount;
+    }
+
+    Map<String, Long> getMaxOfFrame() {
+        return maxOfFrame;
+    }
+}
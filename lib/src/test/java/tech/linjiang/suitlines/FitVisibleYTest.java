@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import android.util.AttributeSet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按可见区域调整y轴区间时，y轴区域的宽度要能容纳滚动后更宽的刻度：
+ * 前一半数据在0~100之间，后一半在1000~10000之间，从开头滚动到末尾。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25,
+        shadows = {ShadowRecordingPath.class, ShadowQuietView.class, ShadowQuietVelocityTracker.class})
+public class FitVisibleYTest {
+
+    private static final int COUNT = 8 * PageCache.PAGE_SIZE;
+
+    @Test
+    public void fedDataKeepsYAreaAfterRelayout() throws InterruptedException {
+        ChartDriver driver = new ChartDriver(attrs());
+        List<Unit> units = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            units.add(new Unit(valueAt(0, i)));
+        }
+        List<List<Unit>> lines = new ArrayList<>();
+        lines.add(units);
+        driver.chart.setFitVisibleY(true);
+        driver.feed(lines, false);
+        driver.frames(2);
+        float leftOfAllData = driver.canvas.getFirstClipLeft();
+        // 在只有小数值的区域重新计算区域
+        driver.chart.setXySize(10);
+        driver.frames(2);
+        assertEquals(leftOfAllData, driver.canvas.getFirstClipLeft(), 0);
+
+        scrollToEnd(driver);
+        assertEquals(leftOfAllData, driver.canvas.getFirstClipLeft(), 0);
+    }
+
+    @Test
+    public void dataSourceWidensYAreaForWiderLabels() throws InterruptedException {
+        ChartDriver driver = new ChartDriver(attrs());
+        driver.chart.setDataSource(new SteppedSource());
+        settle(driver);
+        float leftAtStart = driver.canvas.getFirstClipLeft();
+
+        scrollToEnd(driver);
+        assertTrue(driver.canvas.getFirstClipLeft() > leftAtStart);
+    }
+
+    /**
+     * 可以得到所有数据的区间时，一开始就按最宽的刻度确定y轴区域，滚动时不再变化
+     */
+    @Test
+    public void rangedDataSourceKeepsYArea() throws InterruptedException {
+        ChartDriver widened = new ChartDriver(attrs());
+        widened.chart.setDataSource(new SteppedSource());
+        settle(widened);
+        float narrow = widened.canvas.getFirstClipLeft();
+        scrollToEnd(widened);
+        assertTrue(widened.canvas.getFirstClipLeft() > narrow);
+
+        ChartDriver driver = new ChartDriver(attrs());
+        driver.chart.setDataSource(new RangedSteppedSource());
+        settle(driver);
+        assertEquals(widened.canvas.getFirstClipLeft(), driver.canvas.getFirstClipLeft(), 0);
+
+        scrollToEnd(driver);
+        assertEquals(widened.canvas.getFirstClipLeft(), driver.canvas.getFirstClipLeft(), 0);
+    }
+
+    /**
+     * 约0.5像素一个点
+     */
+    private static AttributeSet attrs() {
+        return Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.maxOfVisible, "2000")
+                .build();
+    }
+
+    private static float valueAt(int line, int index) {
+        return index < COUNT / 2 ? 50 + 40 * (index % 2) : 5000 + 4000 * (index % 2) + line;
+    }
+
+    private static void scrollToEnd(ChartDriver driver) throws InterruptedException {
+        for (int i = 0; i < 6; i++) {
+            driver.drag(1000, 100, 6);
+            settle(driver);
+        }
+    }
+
+    /**
+     * 等待fling停止、后台加载的页放入窗口
+     */
+    private static void settle(ChartDriver driver) throws InterruptedException {
+        for (int k = 0; k < 90; k++) {
+            driver.frame();
+            Thread.sleep(1);
+        }
+    }
+
+    private static class SteppedSource implements SuitLines.DataSource {
+
+        @Override
+        public int getLineCount() {
+            return 1;
+        }
+
+        @Override
+        public int getCount() {
+            return COUNT;
+        }
+
+        @Override
+        public float getValue(int line, int index) {
+            return valueAt(line, index);
+        }
+
+        @Override
+        public String getLabel(int index) {
+            return null;
+        }
+    }
+
+    private static class RangedSteppedSource extends SteppedSource implements SuitLines.RangedDataSource {
+
+        @Override
+        public void findMinAndMax(int line, int from, int to, float[] minAndMax) {
+            for (int i = from; i < to; i++) {
+                minAndMax[0] = Math.min(minAndMax[0], valueAt(line, i));
+                minAndMax[1] = Math.max(minAndMax[1], valueAt(line, i));
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Region;
+
+/**
+ * 只计数、不绘制的Canvas：记录一帧中各类绘制调用的次数、顶点数以及saveLayer/clipRect的使用，
+ * path的顶点数由{@link ShadowRecordingPath}得到。<br>
+ * 所有方法都不分配对象，不影响分配的计数。
+ */
+class RecordingCanvas extends Canvas {
+
+    static final int DRAW_PATH = 0;
+    static final int DRAW_TEXT = 1;
+    static final int DRAW_BITMAP = 2;
+    /**
+     * drawLines的调用次数，线段数计入VERTICES
+     */
+    static final int DRAW_LINES = 3;
+    /**
+     * drawLine、drawRect等其它绘制
+     */
+    static final int DRAW_OTHER = 4;
+    /**
+     * path的顶点，加上drawLines/drawLine的端点
+     */
+    static final int VERTICES = 5;
+    static final int SAVE_LAYER = 6;
+    static final int CLIP_RECT = 7;
+    static final String[] NAMES = {
+            "drawPath", "drawText", "drawBitmap", "drawLines", "drawOther", "vertices", "saveLayer", "clipRect"};
+
+    private final long[] counts = new long[NAMES.length];
+    /**
+     * 这一帧中第一次以float指定的clipRect的左边，SuitLines中为linesArea.left
+     */
+    private float firstClipLeft;
+
+    float getFirstClipLeft() {
+        return firstClipLeft;
+    }
+
+    void beginFrame() {
+        firstClipLeft = Float.NaN;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+    }
+
+    long get(int kind) {
+        return counts[kind];
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        counts[DRAW_PATH]++;
+        counts[VERTICES] += ShadowRecordingPath.vertexCountOf(path);
+    }
+
+    @Override
+    public void drawText(String text, float x, float y, Paint paint) {
+        counts[DRAW_TEXT]++;
+    }
+
+    @Override
+    public void drawText(String text, int start, int end, float x, float y, Paint paint) {
+        counts[DRAW_TEXT]++;
+    }
+
+    @Override
+    public void drawText(char[] text, int index, int count, float x, float y, Paint paint) {
+        counts[DRAW_TEXT]++;
+    }
+
+    @Override
+    public void drawText(CharSequence text, int start, int end, float x, float y, Paint paint) {
+        counts[DRAW_TEXT]++;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        counts[DRAW_BITMAP]++;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+        counts[DRAW_BITMAP]++;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        counts[DRAW_BITMAP]++;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+        counts[DRAW_BITMAP]++;
+    }
+
+    @Override
+    public void drawLines(float[] pts, int offset, int count, Paint paint) {
+        counts[DRAW_LINES]++;
+        counts[VERTICES] += count / 2;
+    }
+
+    @Override
+    public void drawLines(float[] pts, Paint paint) {
+        drawLines(pts, 0, pts.length, paint);
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+        counts[DRAW_OTHER]++;
+        counts[VERTICES] += 2;
+    }
+
+    @Override
+    public void drawRect(RectF rect, Paint paint) {
+        counts[DRAW_OTHER]++;
+    }
+
+    @Override
+    public void drawRect(Rect r, Paint paint) {
+        counts[DRAW_OTHER]++;
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        counts[DRAW_OTHER]++;
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        counts[DRAW_OTHER]++;
+    }
+
+    @Override
+    public int saveLayer(RectF bounds, Paint paint, int saveFlags) {
+        counts[SAVE_LAYER]++;
+        return save();
+    }
+
+    @Override
+    public int saveLayer(RectF bounds, Paint paint) {
+        counts[SAVE_LAYER]++;
+        return save();
+    }
+
+    @Override
+    public int saveLayer(float left, float top, float right, float bottom, Paint paint, int saveFlags) {
+        counts[SAVE_LAYER]++;
+        return save();
+    }
+
+    @Override
+    public int saveLayer(float left, float top, float right, float bottom, Paint paint) {
+        counts[SAVE_LAYER]++;
+        return save();
+    }
+
+    @Override
+    public int saveLayerAlpha(RectF bounds, int alpha, int saveFlags) {
+        counts[SAVE_LAYER]++;
+        return save();
+    }
+
+    @Override
+    public int saveLayerAlpha(float left, float top, float right, float bottom, int alpha, int saveFlags) {
+        counts[SAVE_LAYER]++;
+        return save();
+    }
+
+    @Override
+    public boolean clipRect(RectF rect, Region.Op op) {
+        counts[CLIP_RECT]++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(Rect rect, Region.Op op) {
+        counts[CLIP_RECT]++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(RectF rect) {
+        counts[CLIP_RECT]++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(Rect rect) {
+        counts[CLIP_RECT]++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(float left, float top, float right, float bottom, Region.Op op) {
+        counts[CLIP_RECT]++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(float left, float top, float right, float bottom) {
+        counts[CLIP_RECT]++;
+        if (Float.isNaN(firstClipLeft)) {
+            firstClipLeft = left;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(int left, int top, int right, int bottom) {
+        counts[CLIP_RECT]++;
+        return true;
+    }
+}
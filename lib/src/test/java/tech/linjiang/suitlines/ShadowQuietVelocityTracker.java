@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+/**
+ * 不分配对象的VelocityTracker：真实的实现在native中，而ShadowVelocityTracker每次addMovement
+ * 和computeCurrentVelocity都会分配对象。<br>
+ * 只保留最近的若干个采样（忽略event中的历史采样），速度取最新采样与HORIZON_MS内最早采样之间的平均速度。
+ */
+@Implements(VelocityTracker.class)
+public class ShadowQuietVelocityTracker {
+
+    private static final int HISTORY_SIZE = 20;
+    private static final long HORIZON_MS = 100;
+
+    private final long[] times = new long[HISTORY_SIZE];
+    private final float[] xs = new float[HISTORY_SIZE];
+    private final float[] ys = new float[HISTORY_SIZE];
+    /**
+     * 下一个采样的位置，以及有效的采样数
+     */
+    private int next, count;
+    private float velocityX, velocityY;
+
+    @Implementation
+    public void clear() {
+        next = 0;
+        count = 0;
+        velocityX = 0;
+        velocityY = 0;
+    }
+
+    @Implementation
+    public void addMovement(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            clear();
+        }
+        times[next] = event.getEventTime();
+        xs[next] = event.getX();
+        ys[next] = event.getY();
+        next = (next + 1) % HISTORY_SIZE;
+        count = Math.min(count + 1, HISTORY_SIZE);
+    }
+
+    @Implementation
+    public void computeCurrentVelocity(int units) {
+        computeCurrentVelocity(units, Float.MAX_VALUE);
+    }
+
+    @Implementation
+    public void computeCurrentVelocity(int units, float maxVelocity) {
+        velocityX = 0;
+        velocityY = 0;
+        if (count < 2) {
+            return;
+        }
+        int newest = (next - 1 + HISTORY_SIZE) % HISTORY_SIZE;
+        int oldest = newest;
+        for (int i = 1; i < count; i++) {
+            int index = (newest - i + HISTORY_SIZE) % HISTORY_SIZE;
+            if (times[newest] - times[index] > HORIZON_MS) {
+                break;
+            }
+            oldest = index;
+        }
+        long duration = times[newest] - times[oldest];
+        if (duration <= 0) {
+            return;
+        }
+        velocityX = clamp((xs[newest] - xs[oldest]) * units / duration, maxVelocity);
+        velocityY = clamp((ys[newest] - ys[oldest]) * units / duration, maxVelocity);
+    }
+
+    private static float clamp(float velocity, float maxVelocity) {
+        return Math.max(-maxVelocity, Math.min(velocity, maxVelocity));
+    }
+
+    @Implementation
+    public float getXVelocity() {
+        return velocityX;
+    }
+
+    @Implementation
+    public float getYVelocity() {
+        return velocityY;
+    }
+
+    @Implementation
+    public float getXVelocity(int id) {
+        return velocityX;
+    }
+
+    @Implementation
+    public float getYVelocity(int id) {
+        return velocityY;
+    }
+}
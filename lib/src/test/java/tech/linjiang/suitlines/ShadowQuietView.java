@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowView;
+
+/**
+ * ShadowView的invalidate和onTouchEvent通过代理调用真实的方法，每次调用都会分配代理对象，
+ * 在计算分配时会被算作图表的分配，这里换成不分配的实现：<br>
+ * ChartDriver每帧都会绘制，不需要invalidate；图表不是clickable的，View.onTouchEvent只会返回false。
+ */
+@Implements(View.class)
+public class ShadowQuietView extends ShadowView {
+
+    @Override
+    @Implementation
+    public void invalidate() {
+    }
+
+    @Override
+    @Implementation
+    public boolean onTouchEvent(MotionEvent event) {
+        return false;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 linjiang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.linjiang.suitlines;
+
+import android.graphics.Path;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.internal.ShadowExtractor;
+import org.robolectric.shadows.ShadowPath;
+
+/**
+ * 只记录顶点数的Path：moveTo/lineTo各一个顶点，quadTo/cubicTo各一个端点，
+ * 不保存任何坐标，所以连接path时不会有额外的对象分配，计算分配时不影响结果。<br>
+ * 继承ShadowPath只是因为绘制到Bitmap时ShadowCanvas会把shadow转换为ShadowPath，它看到的始终是空的path。
+ */
+@Implements(Path.class)
+public class ShadowRecordingPath extends ShadowPath {
+
+    private int vertexCount;
+
+    static int vertexCountOf(Path path) {
+        return ((ShadowRecordingPath) ShadowExtractor.extract(path)).vertexCount;
+    }
+
+    @Override
+    @Implementation
+    public void reset() {
+        vertexCount = 0;
+    }
+
+    @Implementation
+    public void rewind() {
+        vertexCount = 0;
+    }
+
+    @Override
+    @Implementation
+    public void moveTo(float x, float y) {
+        vertexCount++;
+    }
+
+    @Override
+    @Implementation
+    public void lineTo(float x, float y) {
+        vertexCount++;
+    }
+
+    @Override
+    @Implementation
+    public void quadTo(float x1, float y1, float x2, float y2) {
+        vertexCount++;
+    }
+
+    @Implementation
+    public void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+        vertexCount++;
+    }
+
+    @Implementation
+    public void close() {
+    }
+
+    @Implementation
+    public boolean isEmpty() {
+        return vertexCount == 0;
+    }
+}